@@ -0,0 +1,262 @@
+package de.timetracker.database;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Abgeschlossene Jahre liegen in eigenen Datenbankdateien neben der Hauptdatenbank
+ * (timetracker-2023.db usw.). Sie werden pro Verbindung erst per ATTACH eingebunden,
+ * wenn eine Abfrage ein archiviertes Jahr berührt; Abfragen auf das laufende Jahr bleiben unverändert.
+ * Bekannt sind die Archive erst nach {@link #scan}. In-Memory-Datenbanken haben keine Archive.
+ */
+final class ArchivePartitions {
+    static final String MAIN_SCHEMA = "main";
+    // SQLITE_MAX_ATTACHED im Standard-Build
+    static final int MAX_ATTACHED = 10;
+
+    private final Path directory; // null bei In-Memory
+    private final String baseName;
+    private final Pattern archiveFileName;
+    private final NavigableSet<Integer> years = new ConcurrentSkipListSet<>();
+
+    /**
+     * @param mainDatabase Datei der Hauptdatenbank oder null bei In-Memory
+     */
+    ArchivePartitions(Path mainDatabase) {
+        if (mainDatabase == null) {
+            this.directory = null;
+            this.baseName = null;
+            this.archiveFileName = null;
+            return;
+        }
+        Path absolute = mainDatabase.toAbsolutePath();
+        String fileName = absolute.getFileName().toString();
+        this.directory = absolute.getParent();
+        this.baseName = fileName.endsWith(".db") ? fileName.substring(0, fileName.length() - 3) : fileName;
+        this.archiveFileName = Pattern.compile(Pattern.quote(baseName) + "-(\\d{4})\\.db");
+    }
+
+    /**
+     * Sucht die Archivdateien neben der Hauptdatenbank. Übernommen werden nur Dateien mit einer Tabelle
+     * time_entries; eine leere Datei aus einem abgebrochenen Archivieren gilt nicht als Archiv.
+     * Jede Datei wird dazu kurz auf conn eingebunden und dabei auf das aktuelle Schema gebracht
+     * (siehe SchemaMigrator.createArchiveTables), conn muss also die Schreibverbindung ohne Transaktion sein.
+     */
+    void scan(Connection conn) {
+        if (directory == null) return;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, baseName + "-*.db")) {
+            for (Path file : files) {
+                Matcher matcher = archiveFileName.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+
+                int year = Integer.parseInt(matcher.group(1));
+                try {
+                    if (prepare(conn, year)) {
+                        years.add(year);
+                    } else {
+                        System.err.println("Archivdatei ohne Tabelle time_entries wird übergangen: " + file);
+                    }
+                } catch (SQLException e) {
+                    System.err.println("Archivdatei nicht lesbar, wird übergangen: " + file + " (" + e.getMessage() + ")");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Archivdateien konnten nicht gesucht werden: " + e.getMessage());
+        }
+        if (!years.isEmpty()) {
+            System.out.println("Archivierte Jahre: " + years);
+        }
+    }
+
+    private boolean prepare(Connection conn, int year) throws SQLException {
+        String schema = schemaFor(year);
+        boolean wasAttached = attachedSchemas(conn).contains(schema);
+        attach(conn, year);
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + schema + ".sqlite_master " +
+                    "WHERE type = 'table' AND name = 'time_entries'")) {
+                if (!rs.next()) return false;
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                SchemaMigrator.createArchiveTables(stmt, schema);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+        } finally {
+            if (!wasAttached) {
+                detach(conn, schema);
+            }
+        }
+    }
+
+    NavigableSet<Integer> getYears() {
+        return Collections.unmodifiableNavigableSet(years);
+    }
+
+    Path pathFor(int year) {
+        return directory.resolve(baseName + "-" + year + ".db");
+    }
+
+    static String schemaFor(int year) {
+        return "archive_" + year;
+    }
+
+    void added(int year) {
+        years.add(year);
+    }
+
+    /**
+     * Verwirft das Archiv eines Jahres, dessen erstes Archivieren fehlgeschlagen ist: löst es von conn,
+     * löscht die Datei samt Journal-Dateien und nimmt das Jahr aus der Menge der archivierten Jahre.
+     * conn darf in keiner Transaktion sein.
+     */
+    void discard(Connection conn, int year) {
+        years.remove(year);
+        String schema = schemaFor(year);
+        try {
+            if (attachedSchemas(conn).contains(schema)) {
+                detach(conn, schema);
+            }
+        } catch (SQLException e) {
+            System.err.println("Archiv " + year + " konnte nicht gelöst werden: " + e.getMessage());
+        }
+
+        Path file = pathFor(year);
+        for (String suffix : List.of("", "-wal", "-shm", "-journal")) {
+            try {
+                Files.deleteIfExists(file.resolveSibling(file.getFileName() + suffix));
+            } catch (IOException e) {
+                System.err.println("Archivdatei konnte nicht gelöscht werden: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Schemas, die für den Zeitraum abgefragt werden müssen: immer main, dazu die archivierten Jahre
+     * im Zeitraum. Fehlende Archive werden auf conn eingebunden. Innerhalb einer Transaktion ist ATTACH
+     * nicht möglich; fehlt dann ein benötigtes Archiv, wird eine SQLException geworfen, statt dessen
+     * Einträge stillschweigend auszulassen (siehe {@link #attachBeforeTransaction}).
+     */
+    List<String> attach(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        if (from.isAfter(to)) return List.of(MAIN_SCHEMA);
+
+        NavigableSet<Integer> needed = years.subSet(from.getYear(), true, to.getYear(), true);
+        if (needed.isEmpty()) return List.of(MAIN_SCHEMA);
+
+        List<String> schemas = new ArrayList<>();
+        schemas.add(MAIN_SCHEMA);
+        Set<String> attached = attachedSchemas(conn);
+        for (int year : needed) {
+            String schema = schemaFor(year);
+            if (!attached.contains(schema)) {
+                if (!conn.getAutoCommit()) {
+                    throw new SQLException("Archiv " + year + " kann innerhalb einer Transaktion nicht eingebunden werden");
+                }
+                makeRoom(conn, attached, needed);
+                attach(conn, year);
+                attached.add(schema);
+            }
+            schemas.add(schema);
+        }
+        return schemas;
+    }
+
+    /**
+     * Bindet vor Beginn einer Transaktion die Archive ein, die jüngsten zuerst und höchstens
+     * {@value #MAX_ATTACHED}, damit Abfragen innerhalb der Transaktion sie lesen können
+     */
+    void attachBeforeTransaction(Connection conn) throws SQLException {
+        if (years.isEmpty()) return;
+
+        NavigableSet<Integer> needed = new TreeSet<>();
+        for (int year : years.descendingSet()) {
+            if (needed.size() == MAX_ATTACHED) break;
+            needed.add(year);
+        }
+        Set<String> attached = attachedSchemas(conn);
+        for (int year : needed) {
+            if (!attached.contains(schemaFor(year))) {
+                makeRoom(conn, attached, needed);
+                attached.add(attach(conn, year));
+            }
+        }
+    }
+
+    /**
+     * Bindet das Archiv eines Jahres ein und legt die Datei dabei an, falls sie fehlt
+     */
+    String attach(Connection conn, int year) throws SQLException {
+        if (directory == null) {
+            throw new SQLException("Archive sind nur mit einer Datenbankdatei möglich");
+        }
+        String schema = schemaFor(year);
+        if (attachedSchemas(conn).contains(schema)) return schema;
+
+        try (PreparedStatement pstmt = conn.prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+            pstmt.setString(1, pathFor(year).toString());
+            pstmt.execute();
+        }
+        return schema;
+    }
+
+    // Platz für ein weiteres Archiv schaffen, indem gerade nicht benötigte Archive gelöst werden
+    private void makeRoom(Connection conn, Set<String> attached, Set<Integer> needed) throws SQLException {
+        List<String> archives = new ArrayList<>();
+        for (String schema : attached) {
+            if (schema.startsWith("archive_")) archives.add(schema);
+        }
+        if (archives.size() < MAX_ATTACHED) return;
+
+        for (String schema : archives) {
+            int year = Integer.parseInt(schema.substring("archive_".length()));
+            if (needed.contains(year)) continue;
+            detach(conn, schema);
+            attached.remove(schema);
+            return;
+        }
+        throw new SQLException("Zeitraum umfasst mehr als " + MAX_ATTACHED + " archivierte Jahre");
+    }
+
+    private static void detach(Connection conn, String schema) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DETACH DATABASE " + schema);
+        }
+    }
+
+    private static Set<String> attachedSchemas(Connection conn) throws SQLException {
+        Set<String> schemas = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                schemas.add(rs.getString("name"));
+            }
+        }
+        return schemas;
+    }
+}
@@ -0,0 +1,285 @@
+package de.timetracker.database;
+
+import de.timetracker.model.ActivityDescription;
+import de.timetracker.model.ConsolidatedEntry;
+import de.timetracker.model.DayStatistics;
+import de.timetracker.model.TimeEntry;
+
+import javax.swing.*;
+import java.time.LocalDate;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Asynchrone Fassade für das TimeEntryDAO. Alle Datenbankzugriffe laufen nacheinander auf einem
+ * eigenen I/O-Thread, die Ergebnisse werden auf dem Event Dispatch Thread zugestellt.
+ * Da es nur einen I/O-Thread gibt, sieht jeder Aufruf die Änderungen aller zuvor abgesetzten Aufrufe.
+ * <p>
+ * Über {@link #writeBehind} vorgemerkte Änderungen werden kurz gesammelt und gemeinsam in einer Transaktion
+ * gespeichert. Vor jedem anderen Aufruf, bei {@link #flush()} und beim {@link #shutdown()} werden sie sofort
+ * geschrieben, sodass kein Aufruf einen veralteten Stand liest. Scheitert ein solcher Stapel (auch wenn eine
+ * Änderung keine Zeile mehr trifft), wird er komplett zurückgerollt und verworfen, nicht erneut versucht;
+ * stattdessen wird der Handler aus {@link #setWriteBehindFailureHandler} aufgerufen.
+ * <p>
+ * Einträge des Models werden nur auf dem EDT angefasst: gespeichert werden Kopien, generierte IDs und
+ * gespeicherte Beschreibungen kommen nach dem Commit über den Callback-Executor zurück.
+ */
+public class AsyncTimeEntryDAO {
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    private static final long WRITE_BEHIND_DELAY_MS = 500;
+
+    private final ScheduledThreadPoolExecutor ioExecutor;
+    private final Executor callbackExecutor;
+    private TimeEntryDAO dao; // nur auf dem I/O-Thread verwendet
+    private boolean lastFlushSucceeded = true; // nur auf dem I/O-Thread verwendet
+    // Eingefügte Einträge des Models, deren ID dort noch nicht angekommen ist; nur auf dem I/O-Thread verwendet
+    private final Map<TimeEntry, Integer> insertedIds = new IdentityHashMap<>();
+
+    private final Object writeBehindLock = new Object();
+    private PendingWrites queuedWrites = new PendingWrites(); // geschützt durch writeBehindLock
+    private ScheduledFuture<?> scheduledFlush; // geschützt durch writeBehindLock
+    private volatile Runnable writeBehindFailureHandler;
+
+    public AsyncTimeEntryDAO() {
+        this(TimeEntryDAO::new, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param daoFactory erzeugt das DAO auf dem I/O-Thread, damit auch das Öffnen der Datenbank dort läuft
+     * @param callbackExecutor Executor, auf dem die Futures abgeschlossen werden (normalerweise der EDT)
+     */
+    public AsyncTimeEntryDAO(Supplier<TimeEntryDAO> daoFactory, Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        this.ioExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "TimeTracker-DB-IO");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Beim Beenden wird explizit geschrieben, verzögerte Flushes müssen nicht abgewartet werden
+        ioExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        ioExecutor.execute(() -> dao = daoFactory.get());
+    }
+
+    /**
+     * Führt beliebige Arbeit mit dem synchronen DAO auf dem I/O-Thread aus, z.B. mehrere Aufrufe
+     * in einer {@link TimeEntryDAO#inTransaction Transaktion}. Die Arbeit darf keine Swing-Komponenten anfassen.
+     */
+    public <T> CompletableFuture<T> submit(Function<TimeEntryDAO, T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    applyQueuedWrites();
+                    T value = work.apply(dao);
+                    callbackExecutor.execute(() -> result.complete(value));
+                } catch (Throwable e) {
+                    // Auch Errors (z.B. OutOfMemoryError) beenden das Future, sonst wartet der Aufrufer ewig
+                    System.err.println("Fehler im Datenbank-Hintergrundthread: " + e.getMessage());
+                    e.printStackTrace();
+                    callbackExecutor.execute(() -> result.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            System.err.println("Datenbankzugriff nach dem Beenden abgelehnt");
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Wendet vorgemerkte Schreibzugriffe innerhalb einer per {@link #submit} abgesetzten Arbeit an, z.B. mit
+     * Savepoints. Bereits eingefügte Einträge werden aktualisiert, auch wenn ihre ID noch nicht zurückgemeldet
+     * wurde. Ein fehlgeschlagener Zugriff markiert tx als rollback-only. Nach dem Commit {@link #publishResults}
+     * aufrufen. Nur auf dem I/O-Thread.
+     */
+    public void apply(PendingWrites writes, TimeEntryDAO sync, Transaction tx) {
+        writes.resolveIds(insertedIds);
+        if (!writes.applyTo(sync)) {
+            tx.setRollbackOnly();
+        }
+    }
+
+    /**
+     * Meldet IDs und gespeicherte Beschreibungen übernommener Schreibzugriffe auf dem Callback-Executor an
+     * die Einträge des Models zurück. Nur auf dem I/O-Thread und nur nach dem Commit.
+     */
+    public void publishResults(PendingWrites writes) {
+        writes.recordIds(insertedIds);
+        callbackExecutor.execute(() -> {
+            writes.publish();
+            // Ab jetzt tragen die Einträge ihre ID selbst
+            try {
+                ioExecutor.execute(() -> writes.forgetIds(insertedIds));
+            } catch (RejectedExecutionException e) {
+                // Beim Beenden nicht mehr nötig
+            }
+        });
+    }
+
+    /**
+     * Merkt Schreibzugriffe zum verzögerten Speichern vor. Änderungen an denselben Einträgen innerhalb von
+     * {@value #WRITE_BEHIND_DELAY_MS} ms werden zusammengefasst und mit einem Commit geschrieben.
+     */
+    public void writeBehind(PendingWrites writes) {
+        if (writes.isEmpty()) return;
+
+        synchronized (writeBehindLock) {
+            queuedWrites.mergeFrom(writes);
+            if (scheduledFlush == null) {
+                try {
+                    scheduledFlush = ioExecutor.schedule(this::applyQueuedWrites,
+                            WRITE_BEHIND_DELAY_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    System.err.println("Verzögertes Speichern nach dem Beenden abgelehnt: " +
+                            writes.size() + " Änderungen verworfen");
+                }
+            }
+        }
+    }
+
+    /**
+     * Schreibt alle vorgemerkten Änderungen sofort; liefert false, wenn das Speichern fehlgeschlagen ist
+     */
+    public CompletableFuture<Boolean> flush() {
+        return submit(sync -> lastFlushSucceeded);
+    }
+
+    /**
+     * Wird auf dem Callback-Executor aufgerufen, wenn verzögert gespeicherte Änderungen verworfen wurden
+     */
+    public void setWriteBehindFailureHandler(Runnable handler) {
+        this.writeBehindFailureHandler = handler;
+    }
+
+    // Läuft auf dem I/O-Thread
+    private void applyQueuedWrites() {
+        PendingWrites batch;
+        synchronized (writeBehindLock) {
+            batch = queuedWrites;
+            queuedWrites = new PendingWrites();
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+
+        if (batch.isEmpty()) {
+            lastFlushSucceeded = true;
+            return;
+        }
+
+        boolean committed;
+        try {
+            committed = dao.inTransaction(tx -> apply(batch, dao, tx));
+        } catch (RuntimeException e) {
+            System.err.println("Fehler beim verzögerten Speichern: " + e.getMessage());
+            e.printStackTrace();
+            committed = false;
+        }
+
+        lastFlushSucceeded = committed;
+        if (committed) {
+            publishResults(batch);
+            System.out.println("Verzögert gespeichert: " + batch.size() + " Änderungen in einer Transaktion");
+        } else {
+            System.err.println(batch.size() + " verzögert gespeicherte Änderungen konnten nicht gespeichert werden");
+            Runnable handler = writeBehindFailureHandler;
+            if (handler != null) {
+                callbackExecutor.execute(handler);
+            }
+        }
+    }
+
+    // TimeEntry Operationen
+
+    /**
+     * Speichert den aktuellen Stand des Eintrags; ID und gespeicherte Beschreibung sind gesetzt,
+     * bevor das Future abgeschlossen wird
+     */
+    public CompletableFuture<Boolean> insertTimeEntry(TimeEntry entry) {
+        return saveNow(entry);
+    }
+
+    public CompletableFuture<Boolean> updateTimeEntry(TimeEntry entry) {
+        return saveNow(entry);
+    }
+
+    private CompletableFuture<Boolean> saveNow(TimeEntry entry) {
+        PendingWrites writes = new PendingWrites();
+        writes.save(entry);
+        return submit(sync -> {
+            boolean committed = sync.inTransaction(tx -> apply(writes, sync, tx));
+            if (committed) {
+                // Erreicht den Callback-Executor vor dem Abschluss des Futures
+                publishResults(writes);
+            }
+            return committed;
+        });
+    }
+
+    public CompletableFuture<List<TimeEntry>> getTimeEntriesByDate(LocalDate date) {
+        return submit(sync -> sync.getTimeEntriesByDate(date));
+    }
+
+    public CompletableFuture<List<TimeEntry>> getTimeEntriesBetween(LocalDate from, LocalDate to) {
+        return submit(sync -> sync.getTimeEntriesBetween(from, to));
+    }
+
+    public CompletableFuture<List<TimeEntry>> searchEntries(String query, LocalDate from, LocalDate to, int limit) {
+        return submit(sync -> sync.searchEntries(query, from, to, limit));
+    }
+
+    // ConsolidatedEntry Operationen
+    public CompletableFuture<List<ConsolidatedEntry>> getConsolidatedEntriesByDate(LocalDate date) {
+        return submit(sync -> sync.getConsolidatedEntriesByDate(date));
+    }
+
+    public CompletableFuture<List<ConsolidatedEntry>> getConsolidatedEntriesBetween(LocalDate from, LocalDate to) {
+        return submit(sync -> sync.getConsolidatedEntriesBetween(from, to));
+    }
+
+    public CompletableFuture<Boolean> deleteConsolidatedEntriesByDate(LocalDate date) {
+        return submit(sync -> sync.deleteConsolidatedEntriesByDate(date));
+    }
+
+    // ActivityDescription und Statistik
+    public CompletableFuture<List<ActivityDescription>> getActivityDescriptions(int limit) {
+        return submit(sync -> sync.getActivityDescriptions(limit));
+    }
+
+    public CompletableFuture<DayStatistics> getDayStatistics(LocalDate date) {
+        return submit(sync -> sync.getDayStatistics(date));
+    }
+
+    /**
+     * Nimmt keine neuen Aufträge mehr an und wartet, bis die bereits abgesetzten und die verzögerten
+     * Schreibzugriffe erledigt sind
+     */
+    public void shutdown() {
+        try {
+            ioExecutor.execute(this::applyQueuedWrites);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Datenbank-Hintergrundthread bereits beendet");
+        }
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Datenbank-Hintergrundthread nach " + SHUTDOWN_WAIT_SECONDS +
+                        " Sekunden nicht beendet - ausstehende Zugriffe werden verworfen");
+                ioExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            ioExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package de.timetracker.database;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sicherungen der Hauptdatenbank und ihrer Jahresarchive über die Online-Backup-API von SQLite, auf einem
+ * eigenen Thread mit einer eigenen Leseverbindung. Die Verbindung hält während der Sicherung eine
+ * Lesetransaktion über alle eingebundenen Dateien offen und sieht damit einen festen Stand; dank WAL laufen
+ * Schreibzugriffe der Anwendung ungehindert weiter. Kopiert wird in kleinen Schritten mit kurzen Pausen,
+ * danach wird jede Kopie per integrity_check geprüft und erst dann unter ihrem endgültigen Namen abgelegt.
+ * Eine Sicherung besteht aus timetracker-backup-ZEIT.db und je einer timetracker-backup-ZEIT-JJJJ.db pro
+ * Archiv; rotiert wird sie als Ganzes. Behalten werden die letzte Sicherung der letzten 7 Tage und der
+ * letzten 4 Wochen.
+ */
+public class BackupService {
+    private static final int PAGES_PER_STEP = 64;
+    private static final int STEP_PAUSE_MS = 5;
+    // Wartezeit und Versuche, falls die Quelle gerade gesperrt ist
+    private static final int BUSY_SLEEP_MS = 100;
+    private static final int BUSY_RETRIES = 50;
+
+    private static final long CHECK_INTERVAL_MINUTES = 60;
+    private static final long INITIAL_DELAY_MINUTES = 2;
+    private static final long BACKUP_INTERVAL_HOURS = 24;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    private static final int KEEP_DAILY = 7;
+    private static final int KEEP_WEEKLY = 4;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final DatabaseManager dbManager;
+    private final Path directory;
+    private final String baseName;
+    private final Pattern backupFileName;
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Sicherungen im Unterverzeichnis "backups" neben der Datenbankdatei
+     */
+    public BackupService(DatabaseManager dbManager) {
+        this(dbManager, defaultDirectory(dbManager));
+    }
+
+    public BackupService(DatabaseManager dbManager, Path directory) {
+        this.dbManager = dbManager;
+        this.directory = directory;
+        String fileName = dbManager.getLocation().isInMemory()
+                ? "timetracker" : dbManager.getLocation().getPath().getFileName().toString();
+        this.baseName = fileName.endsWith(".db") ? fileName.substring(0, fileName.length() - 3) : fileName;
+        this.backupFileName = Pattern.compile(Pattern.quote(baseName) + "-backup-(\\d{8}-\\d{6})\\.db");
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "TimeTracker-Backup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    private static Path defaultDirectory(DatabaseManager dbManager) {
+        DatabaseLocation location = dbManager.getLocation();
+        if (location.isInMemory()) return null;
+        return location.getPath().toAbsolutePath().getParent().resolve("backups");
+    }
+
+    /**
+     * Prüft stündlich, ob die letzte Sicherung älter als einen Tag ist, und sichert dann im Hintergrund
+     */
+    public void start() {
+        if (directory == null) {
+            System.out.println("Keine automatischen Sicherungen für In-Memory-Datenbanken");
+            return;
+        }
+        executor.scheduleWithFixedDelay(this::backupIfDue, INITIAL_DELAY_MINUTES, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Sichert sofort auf dem Sicherungs-Thread; das Future liefert die geprüfte Sicherungsdatei
+     */
+    public CompletableFuture<Path> backupAsync() {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(backupNow());
+            } catch (SQLException | IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Wartet eine laufende Sicherung ab. Eine danach noch laufende Sicherung hinterlässt nur eine .part-Datei,
+     * die beim nächsten Lauf entfernt wird.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Sicherung nach " + SHUTDOWN_WAIT_SECONDS + " Sekunden nicht beendet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void backupIfDue() {
+        try {
+            LocalDateTime latest = latestBackupTime();
+            if (latest != null && latest.isAfter(LocalDateTime.now().minusHours(BACKUP_INTERVAL_HOURS))) {
+                return;
+            }
+            backupNow();
+        } catch (SQLException | IOException | RuntimeException e) {
+            // Der nächste Lauf versucht es erneut
+            System.err.println("Automatische Sicherung fehlgeschlagen: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Erstellt, prüft und rotiert eine Sicherung samt Archiven auf dem aufrufenden Thread und liefert die
+     * Sicherung der Hauptdatenbank
+     */
+    public Path backupNow() throws SQLException, IOException {
+        if (directory == null) {
+            throw new SQLException("In-Memory-Datenbanken können nicht gesichert werden");
+        }
+        Files.createDirectories(directory);
+        removeIncompleteBackups();
+
+        String stamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+        Path target = directory.resolve(baseName + "-backup-" + stamp + ".db");
+        Map<Integer, Path> archiveTargets = new TreeMap<>();
+        for (int year : dbManager.getArchivedYears()) {
+            archiveTargets.put(year, directory.resolve(baseName + "-backup-" + stamp + "-" + year + ".db"));
+        }
+        long started = System.nanoTime();
+
+        try {
+            copyOnline(target, archiveTargets);
+            verify(partFor(target), true);
+            for (Path archiveTarget : archiveTargets.values()) {
+                verify(partFor(archiveTarget), false);
+            }
+            // Die Hauptdatenbank zuletzt: erst mit ihr gilt die Sicherung als vorhanden
+            for (Path archiveTarget : archiveTargets.values()) {
+                Files.move(partFor(archiveTarget), archiveTarget, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(partFor(target), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(partFor(target));
+            for (Path archiveTarget : archiveTargets.values()) {
+                Files.deleteIfExists(partFor(archiveTarget));
+                Files.deleteIfExists(archiveTarget);
+            }
+            throw e;
+        }
+
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        System.out.println("Sicherung erstellt: " + target + " (" + Files.size(target) / 1024 + " KB, "
+                + archiveTargets.size() + " Archive, " + millis + " ms)");
+        rotate();
+        return target;
+    }
+
+    private static Path partFor(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+
+    /**
+     * Kopiert die Hauptdatenbank und die Archive in die .part-Dateien ihrer Ziele. Pro Verbindung lassen sich
+     * höchstens {@value ArchivePartitions#MAX_ATTACHED} Archive einbinden; weitere werden in einem
+     * eigenen Durchgang kopiert.
+     */
+    private void copyOnline(Path target, Map<Integer, Path> archiveTargets) throws SQLException {
+        List<Integer> years = new ArrayList<>(archiveTargets.keySet());
+        int copied = 0;
+        boolean mainCopied = false;
+
+        while (!mainCopied || copied < years.size()) {
+            List<Integer> batch = years.subList(copied, Math.min(years.size(), copied + ArchivePartitions.MAX_ATTACHED));
+            try (Connection conn = dbManager.openBackupConnection()) {
+                List<String> schemas = new ArrayList<>();
+                if (!mainCopied) {
+                    schemas.add(ArchivePartitions.MAIN_SCHEMA);
+                }
+                for (int year : batch) {
+                    schemas.add(dbManager.attachArchive(conn, year));
+                }
+
+                // Lesetransaktion: fester Stand für alle Schritte und alle Dateien, Änderungen anderer
+                // Verbindungen starten die Sicherung nicht neu
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    for (String schema : schemas) {
+                        try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + schema + ".sqlite_schema")) {
+                            rs.next();
+                        }
+                    }
+                }
+
+                try {
+                    if (!mainCopied) {
+                        copySchema(conn, ArchivePartitions.MAIN_SCHEMA, partFor(target));
+                    }
+                    for (int year : batch) {
+                        copySchema(conn, ArchivePartitions.schemaFor(year), partFor(archiveTargets.get(year)));
+                    }
+                } finally {
+                    conn.rollback();
+                }
+            }
+            mainCopied = true;
+            copied += batch.size();
+        }
+    }
+
+    private void copySchema(Connection conn, String schema, Path part) throws SQLException {
+        int rc = conn.unwrap(SQLiteConnection.class).getDatabase().backup(schema, part.toString(),
+                (remaining, pageCount) -> pause(), BUSY_SLEEP_MS, BUSY_RETRIES, PAGES_PER_STEP);
+        if (rc != 0) {
+            throw new SQLException("Sicherung von " + schema + " abgebrochen (SQLite-Code " + rc + ")");
+        }
+    }
+
+    // Zwischen den Schritten anderen Zugriffen auf die Platte den Vortritt lassen
+    private static void pause() {
+        try {
+            Thread.sleep(STEP_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * integrity_check für jede Kopie; bei der Hauptdatenbank zusätzlich die Schema-Version
+     * (Archive haben keine eigene)
+     */
+    private void verify(Path part, boolean mainDatabase) throws SQLException {
+        int expectedVersion = new SchemaMigrator().getLatestVersion();
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + part);
+             Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA integrity_check")) {
+                String result = rs.next() ? rs.getString(1) : "keine Antwort";
+                if (!"ok".equals(result)) {
+                    throw new SQLException("Sicherung fehlerhaft: " + part.getFileName() + ": " + result);
+                }
+            }
+            if (!mainDatabase) return;
+
+            int version = SchemaMigrator.readUserVersion(conn);
+            if (version != expectedVersion) {
+                throw new SQLException("Sicherung hat Schema-Version " + version + ", erwartet " + expectedVersion);
+            }
+        }
+    }
+
+    private void removeIncompleteBackups() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, baseName + "-backup-*" + PART_SUFFIX)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+                System.out.println("Unvollständige Sicherung entfernt: " + file.getFileName());
+            }
+        }
+    }
+
+    private static final class Backup {
+        private final Path file;
+        private final String stamp;
+        private final LocalDateTime createdAt;
+
+        private Backup(Path file, String stamp, LocalDateTime createdAt) {
+            this.file = file;
+            this.stamp = stamp;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * Vorhandene Sicherungen (nur die Dateien der Hauptdatenbank), die neueste zuerst
+     */
+    private List<Backup> listBackups() throws IOException {
+        List<Backup> backups = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return backups;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, baseName + "-backup-*.db")) {
+            for (Path file : files) {
+                Matcher matcher = backupFileName.matcher(file.getFileName().toString());
+                if (!matcher.matches()) continue;
+                try {
+                    backups.add(new Backup(file, matcher.group(1), LocalDateTime.parse(matcher.group(1), TIMESTAMP_FORMAT)));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Sicherung mit unbekanntem Zeitstempel ignoriert: " + file.getFileName());
+                }
+            }
+        }
+        backups.sort(Comparator.comparing((Backup backup) -> backup.createdAt).reversed());
+        return backups;
+    }
+
+    private LocalDateTime latestBackupTime() throws IOException {
+        List<Backup> backups = listBackups();
+        return backups.isEmpty() ? null : backups.get(0).createdAt;
+    }
+
+    /**
+     * Behält die jeweils neueste Sicherung der letzten KEEP_DAILY Tage und KEEP_WEEKLY Wochen;
+     * mit einer Sicherung werden auch ihre Archivkopien entfernt
+     */
+    private void rotate() throws IOException {
+        Set<LocalDate> days = new HashSet<>();
+        Set<LocalDate> weeks = new HashSet<>();
+
+        for (Backup backup : listBackups()) {
+            LocalDate day = backup.createdAt.toLocalDate();
+            LocalDate week = day.with(DayOfWeek.MONDAY);
+
+            boolean keep = false;
+            if (!days.contains(day) && days.size() < KEEP_DAILY) {
+                days.add(day);
+                keep = true;
+            }
+            if (!weeks.contains(week) && weeks.size() < KEEP_WEEKLY) {
+                weeks.add(week);
+                keep = true;
+            }
+            if (!keep) {
+                try (DirectoryStream<Path> archives = Files.newDirectoryStream(directory,
+                        baseName + "-backup-" + backup.stamp + "-*.db")) {
+                    for (Path archive : archives) {
+                        Files.deleteIfExists(archive);
+                    }
+                }
+                Files.deleteIfExists(backup.file);
+                System.out.println("Alte Sicherung entfernt: " + backup.file.getFileName());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.timetracker.database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Abbildung von Datum und Uhrzeit auf die Integer-Spalten (ab Schema-Version 4):
+ * Datum als Epoch-Day, Uhrzeit als Sekunde des Tages.
+ * Beim Lesen werden auch noch ISO-Texte älterer Schemata bzw. Programmversionen akzeptiert.
+ */
+final class ColumnCodec {
+
+    private ColumnCodec() {
+    }
+
+    static long encodeDate(LocalDate date) {
+        return date.toEpochDay();
+    }
+
+    static int encodeTime(LocalTime time) {
+        return time.toSecondOfDay();
+    }
+
+    static void bindDate(PreparedStatement pstmt, int index, LocalDate date) throws SQLException {
+        pstmt.setLong(index, encodeDate(date));
+    }
+
+    static void bindTime(PreparedStatement pstmt, int index, LocalTime time) throws SQLException {
+        if (time == null) {
+            pstmt.setNull(index, Types.INTEGER);
+        } else {
+            pstmt.setInt(index, encodeTime(time));
+        }
+    }
+
+    static LocalDate readDate(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) return null;
+        if (value instanceof Number number) {
+            return LocalDate.ofEpochDay(number.longValue());
+        }
+        return LocalDate.parse(value.toString());
+    }
+
+    static LocalTime readTime(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value == null) return null;
+        if (value instanceof Number number) {
+            return LocalTime.ofSecondOfDay(number.longValue());
+        }
+        return LocalTime.parse(value.toString());
+    }
+}
@@ -0,0 +1,76 @@
+package de.timetracker.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Leihgabe einer langlebigen Verbindung aus dem DatabaseManager.
+ * close() schließt nicht die physische Verbindung, sondern gibt sie nur zurück.
+ */
+final class ConnectionLease implements InvocationHandler {
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private final Runnable releaseAction;
+    private boolean released = false;
+
+    private ConnectionLease(Connection physical, StatementCache statementCache, Runnable releaseAction) {
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.releaseAction = releaseAction;
+    }
+
+    static Connection wrap(Connection physical, StatementCache statementCache, Runnable releaseAction) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionLease.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionLease(physical, statementCache, releaseAction));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "close":
+                if (!released) {
+                    released = true;
+                    releaseAction.run();
+                }
+                return null;
+            case "isClosed":
+                return released || physical.isClosed();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ConnectionLease[" + physical + (released ? ", zurückgegeben" : "") + "]";
+            default:
+                break;
+        }
+
+        if (released) {
+            throw new SQLException("Verbindung wurde bereits an den Pool zurückgegeben");
+        }
+
+        // prepareStatement(sql) und prepareStatement(sql, autoGeneratedKeys) über den Cache
+        if (statementCache != null && method.getName().equals("prepareStatement")) {
+            Class<?>[] types = method.getParameterTypes();
+            if (types.length == 1) {
+                return statementCache.prepare((String) args[0], Statement.NO_GENERATED_KEYS);
+            }
+            if (types.length == 2 && types[1] == int.class) {
+                return statementCache.prepare((String) args[0], (Integer) args[1]);
+            }
+        }
+
+        try {
+            return method.invoke(physical, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
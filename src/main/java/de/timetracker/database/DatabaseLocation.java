@@ -0,0 +1,89 @@
+package de.timetracker.database;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.prefs.Preferences;
+
+/**
+ * Ort der Datenbank: eine Datei oder eine benannte In-Memory-Datenbank.
+ * Die Datei wird in dieser Reihenfolge bestimmt: System-Property "timetracker.db.path",
+ * Umgebungsvariable TIMETRACKER_DB, Preferences-Schlüssel "databasePath", sonst timetracker.db
+ * im Arbeitsverzeichnis. Der Wert ":memory:" wählt eine In-Memory-Datenbank.
+ */
+public final class DatabaseLocation {
+    public static final String PATH_PROPERTY = "timetracker.db.path";
+    public static final String PATH_ENVIRONMENT = "TIMETRACKER_DB";
+    public static final String PATH_PREFERENCE = "databasePath";
+    public static final String IN_MEMORY = ":memory:";
+    private static final String DEFAULT_FILE = "timetracker.db";
+
+    private final Path path; // null bei In-Memory
+    private final String memoryName;
+
+    private DatabaseLocation(Path path, String memoryName) {
+        this.path = path;
+        this.memoryName = memoryName;
+    }
+
+    public static DatabaseLocation file(Path path) {
+        return new DatabaseLocation(path, null);
+    }
+
+    /**
+     * In-Memory-Datenbank, die alle Verbindungen desselben Namens über den Shared Cache teilen.
+     * Sie existiert, solange eine dieser Verbindungen offen ist.
+     */
+    public static DatabaseLocation inMemory(String name) {
+        return new DatabaseLocation(null, name);
+    }
+
+    /**
+     * In-Memory-Datenbank mit eindeutigem Namen, z.B. für voneinander unabhängige Messläufe
+     */
+    public static DatabaseLocation inMemory() {
+        return inMemory("timetracker-" + UUID.randomUUID());
+    }
+
+    public static DatabaseLocation fromConfiguration() {
+        String configured = System.getProperty(PATH_PROPERTY);
+        if (isBlank(configured)) {
+            configured = System.getenv(PATH_ENVIRONMENT);
+        }
+        if (isBlank(configured)) {
+            configured = Preferences.userNodeForPackage(DatabaseLocation.class).get(PATH_PREFERENCE, null);
+        }
+        if (isBlank(configured)) {
+            return file(Path.of(DEFAULT_FILE));
+        }
+
+        configured = configured.trim();
+        return configured.equals(IN_MEMORY) ? inMemory() : file(Path.of(configured));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    public boolean isInMemory() {
+        return path == null;
+    }
+
+    /**
+     * Pfad der Datenbankdatei, null bei In-Memory
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public String getJdbcUrl() {
+        if (isInMemory()) {
+            return "jdbc:sqlite:file:" + memoryName + "?mode=memory&cache=shared";
+        }
+        return "jdbc:sqlite:" + path;
+    }
+
+    @Override
+    public String toString() {
+        return isInMemory() ? "In-Memory (" + memoryName + ")" : path.toString();
+    }
+}
@@ -0,0 +1,251 @@
+package de.timetracker.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wartung der Hauptdatenbank in Leerlaufzeiten: Statistiken für den Query-Planer (ANALYZE bzw.
+ * PRAGMA optimize), Rückgabe freier Seiten per incremental_vacuum und ein WAL-Checkpoint.
+ * Läuft höchstens einmal am Tag auf einem eigenen Thread, wenn die Datenbank eine Weile unverändert
+ * war oder das Fenster in den System Tray geht. Dauer und Größe vor/nach jedem Schritt stehen in maintenance_log.
+ * Dateien, die noch ohne auto_vacuum angelegt wurden, werden beim ersten Lauf einmalig per VACUUM umgestellt.
+ */
+public class DatabaseMaintenance {
+    private static final long CHECK_INTERVAL_MINUTES = 5;
+    private static final long IDLE_MINUTES = 15;
+    private static final long MAINTENANCE_INTERVAL_HOURS = 24;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+    private static final int LOG_RETENTION_DAYS = 90;
+
+    // Seiten pro Schritt; zwischen den Schritten wird die Schreibverbindung freigegeben
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+    // Zeilen pro Index, die ANALYZE höchstens untersucht
+    private static final int ANALYSIS_LIMIT = 1000;
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final DatabaseManager dbManager;
+    private final ScheduledThreadPoolExecutor executor;
+    private volatile boolean stopping = false;
+
+    public DatabaseMaintenance(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "TimeTracker-Maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Prüft regelmäßig, ob eine Wartung fällig ist und die Datenbank lange genug unverändert war
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(() -> runIfDue(TimeUnit.MINUTES.toMillis(IDLE_MINUTES)),
+                CHECK_INTERVAL_MINUTES, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Für Leerlauf-Ereignisse wie das Minimieren in den System Tray: wartet, falls fällig, sofort
+     */
+    public void idle() {
+        executor.execute(() -> runIfDue(0));
+    }
+
+    /**
+     * Wartet sofort, unabhängig vom letzten Lauf; das Future liefert die freigegebenen Bytes
+     */
+    public CompletableFuture<Long> runAsync() {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(runNow());
+            } catch (SQLException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Bricht eine laufende Wartung nach dem aktuellen Schritt ab
+     */
+    public void shutdown() {
+        stopping = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Datenbankwartung nach " + SHUTDOWN_WAIT_SECONDS + " Sekunden nicht beendet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runIfDue(long minIdleMillis) {
+        try {
+            if (stopping || dbManager.getMillisSinceLastChange() < minIdleMillis || !isDue()) {
+                return;
+            }
+            runNow();
+        } catch (SQLException | RuntimeException e) {
+            // Der nächste Lauf versucht es erneut
+            System.err.println("Datenbankwartung fehlgeschlagen: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private boolean isDue() throws SQLException {
+        try (Connection conn = dbManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(run_at) FROM maintenance_log")) {
+            long lastRun = rs.next() ? rs.getLong(1) : 0;
+            return lastRun < System.currentTimeMillis() / 1000 - TimeUnit.HOURS.toSeconds(MAINTENANCE_INTERVAL_HOURS);
+        }
+    }
+
+    /**
+     * Führt alle Schritte auf dem aufrufenden Thread aus und gibt die freigegebenen Bytes zurück
+     */
+    public long runNow() throws SQLException {
+        long runAt = System.currentTimeMillis() / 1000;
+        long reclaimed = 0;
+
+        if (!stopping) updateStatistics(runAt);
+        if (!stopping) reclaimed = reclaimFreePages(runAt);
+        if (!stopping) checkpoint(runAt);
+
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "DELETE FROM maintenance_log WHERE run_at < unixepoch('now', ?)")) {
+            pstmt.setString(1, "-" + LOG_RETENTION_DAYS + " days");
+            pstmt.executeUpdate();
+        }
+
+        System.out.println("Datenbankwartung abgeschlossen: " + reclaimed / 1024 + " KB freigegeben");
+        return reclaimed;
+    }
+
+    /**
+     * ANALYZE, solange noch keine Statistiken vorliegen, danach PRAGMA optimize
+     * (analysiert nur Tabellen, deren Statistiken veraltet sind)
+     */
+    private void updateStatistics(long runAt) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            boolean hasStatistics;
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_schema WHERE name = 'sqlite_stat1'")) {
+                hasStatistics = rs.next();
+            }
+
+            String step = hasStatistics ? "optimize" : "analyze";
+            long started = System.nanoTime();
+            stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+            stmt.execute(hasStatistics ? "PRAGMA optimize" : "ANALYZE main");
+            record(conn, runAt, step, started, null, null);
+        }
+    }
+
+    /**
+     * Gibt freie Seiten an das Dateisystem zurück. Ohne auto_vacuum = INCREMENTAL wird die Datei
+     * einmalig per VACUUM umgestellt, das die Schreibverbindung für die Dauer des Umbaus belegt.
+     * Gibt die freigegebenen Bytes zurück.
+     */
+    private long reclaimFreePages(long runAt) throws SQLException {
+        long started = System.nanoTime();
+        long sizeBefore = databaseSize();
+
+        // Über die Schreibverbindung: Leseverbindungen können nach dem Umstellen noch den alten Wert melden
+        int autoVacuum;
+        try (Connection conn = dbManager.getConnection()) {
+            autoVacuum = (int) queryLong(conn, "PRAGMA main.auto_vacuum");
+        }
+
+        if (autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+            try (Connection conn = dbManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA main.auto_vacuum = INCREMENTAL");
+                stmt.execute("VACUUM main");
+                long sizeAfter = databaseSize(conn);
+                record(conn, runAt, "vacuum", started, sizeBefore, sizeAfter);
+                return sizeBefore - sizeAfter;
+            }
+        }
+
+        long freePages;
+        do {
+            try (Connection conn = dbManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                // Jeder Schritt des Statements gibt nur eine Seite frei; executeUpdate läuft bis zum Ende,
+                // execute hielte nach der ersten Seite an
+                stmt.executeUpdate("PRAGMA main.incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")");
+                freePages = queryLong(conn, "PRAGMA main.freelist_count");
+            }
+        } while (freePages > 0 && !stopping);
+
+        try (Connection conn = dbManager.getConnection()) {
+            long sizeAfter = databaseSize(conn);
+            record(conn, runAt, "incremental_vacuum", started, sizeBefore, sizeAfter);
+            return sizeBefore - sizeAfter;
+        }
+    }
+
+    /**
+     * Schreibt das WAL in die Datenbankdatei zurück und kürzt es; erst danach schrumpft die Datei
+     * auch auf der Platte
+     */
+    private void checkpoint(long runAt) throws SQLException {
+        try (Connection conn = dbManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            long started = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery("PRAGMA main.wal_checkpoint(TRUNCATE)")) {
+                if (rs.next() && rs.getInt(1) != 0) {
+                    System.out.println("WAL-Checkpoint unvollständig, Leser aktiv");
+                }
+            }
+            record(conn, runAt, "wal_checkpoint", started, null, null);
+        }
+    }
+
+    private long databaseSize() throws SQLException {
+        try (Connection conn = dbManager.getReadConnection()) {
+            return databaseSize(conn);
+        }
+    }
+
+    private static long databaseSize(Connection conn) throws SQLException {
+        return queryLong(conn, "PRAGMA main.page_count") * queryLong(conn, "PRAGMA main.page_size");
+    }
+
+    private static long queryLong(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static void record(Connection conn, long runAt, String step, long startedNanos,
+                               Long sizeBefore, Long sizeAfter) throws SQLException {
+        long millis = (System.nanoTime() - startedNanos) / 1_000_000;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "INSERT INTO maintenance_log (run_at, step, duration_ms, size_before, size_after) VALUES (?, ?, ?, ?, ?)")) {
+            pstmt.setLong(1, runAt);
+            pstmt.setString(2, step);
+            pstmt.setLong(3, millis);
+            pstmt.setObject(4, sizeBefore);
+            pstmt.setObject(5, sizeAfter);
+            pstmt.executeUpdate();
+        }
+
+        String sizes = sizeBefore != null && sizeAfter != null
+                ? ", " + sizeBefore / 1024 + " KB -> " + sizeAfter / 1024 + " KB" : "";
+        System.out.println("Datenbankwartung " + step + ": " + millis + " ms" + sizes);
+    }
+}
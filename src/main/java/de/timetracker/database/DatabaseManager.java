@@ -1,58 +1,372 @@
 package de.timetracker.database;
 
-import java.io.File;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Verwaltet eine langlebige Schreibverbindung und einen kleinen Pool von Leseverbindungen.
+ * Verbindungen werden als Leihgaben ausgegeben; close() gibt sie an den Manager zurück.
+ * Die Anwendung nutzt die per {@link #getInstance()} konfigurierte Datenbank; Tests und Messungen
+ * können mit dem öffentlichen Konstruktor voneinander unabhängige Instanzen öffnen.
+ */
 public class DatabaseManager {
-    private static final String DB_NAME = "timetracker.db";
-    private static final String DB_URL = "jdbc:sqlite:" + DB_NAME;
+    private static final int READ_POOL_SIZE = 3;
+    private static final long READ_WAIT_SECONDS = 10;
     private static DatabaseManager instance;
-    private static boolean isInitialized = false;
 
-    private DatabaseManager() {
-        if (!isInitialized) {
-            // SQLite JDBC Treiber explizit laden
-            try {
-                Class.forName("org.sqlite.JDBC");
-                System.out.println("SQLite JDBC Treiber geladen");
-                initializeDatabase();
-                isInitialized = true;
-            } catch (ClassNotFoundException e) {
-                System.err.println("SQLite JDBC Treiber nicht gefunden: " + e.getMessage());
-                System.err.println("Bitte prüfen Sie, ob sqlite-jdbc im Classpath enthalten ist");
-            }
+    private final DatabaseLocation location;
+    // In-Memory sperrt der Shared Cache ganze Tabellen ohne busy_timeout; dort lesen alle über die Schreibverbindung
+    private final int readPoolSize;
+    private boolean isInitialized = false;
+
+    // Eine Schreibverbindung, exklusiv pro Thread (reentrant für verschachtelte DAO-Aufrufe)
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Connection writeConnection;
+    private Transaction activeTransaction; // nur vom Halter des writeLock gelesen/geschrieben
+
+    // Letzte Änderung über die Schreibverbindung; Zugriffe ohne Änderung zählen nicht
+    private long lastTotalChanges; // nur vom Halter des writeLock gelesen/geschrieben
+    private volatile long lastChangeMillis = System.currentTimeMillis();
+
+    // Leseverbindungen werden bei Bedarf bis READ_POOL_SIZE geöffnet
+    private final BlockingQueue<Connection> idleReadConnections;
+    private final List<Connection> allReadConnections = new ArrayList<>();
+
+    // Ein Statement-Cache pro physischer Verbindung
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+    // Gemeinsam für alle DAO-Instanzen, damit Schreibzugriffe jeder Instanz den Cache aktuell halten
+    private final DayCache dayCache = new DayCache();
+
+    // Archivdateien abgeschlossener Jahre, pro Verbindung bei Bedarf eingebunden
+    private final ArchivePartitions archives;
+
+    // Änderungen an time_entries als Ereignisse statt an Ort und Stelle (optional)
+    private final MutationJournal journal;
+
+    private final PragmaProfile pragmaProfile;
+    private volatile boolean closed = false;
+
+    public DatabaseManager(DatabaseLocation location) {
+        this(location, PragmaProfile.fromSystemProperty());
+    }
+
+    public DatabaseManager(DatabaseLocation location, PragmaProfile pragmaProfile) {
+        this(location, pragmaProfile, MutationJournal.isConfigured());
+    }
+
+    /**
+     * @param journaled Änderungen an Einträgen als Ereignisse anhängen statt time_entries direkt zu ändern
+     *                  (siehe MutationJournal); sonst per System-Property "timetracker.db.journal"
+     */
+    public DatabaseManager(DatabaseLocation location, PragmaProfile pragmaProfile, boolean journaled) {
+        this.location = location;
+        this.pragmaProfile = pragmaProfile;
+        this.journal = new MutationJournal(journaled);
+        this.readPoolSize = location.isInMemory() ? 0 : READ_POOL_SIZE;
+        this.idleReadConnections = new ArrayBlockingQueue<>(READ_POOL_SIZE);
+        createParentDirectory(location);
+        this.archives = new ArchivePartitions(location.getPath());
+
+        // SQLite JDBC Treiber explizit laden
+        try {
+            Class.forName("org.sqlite.JDBC");
+            System.out.println("SQLite JDBC Treiber geladen");
+            initializeDatabase();
+            isInitialized = true;
+        } catch (ClassNotFoundException e) {
+            System.err.println("SQLite JDBC Treiber nicht gefunden: " + e.getMessage());
+            System.err.println("Bitte prüfen Sie, ob sqlite-jdbc im Classpath enthalten ist");
+        }
+    }
+
+    // Ein konfigurierter Pfad darf auf ein noch nicht vorhandenes Verzeichnis zeigen
+    private static void createParentDirectory(DatabaseLocation location) {
+        if (location.isInMemory()) return;
+        try {
+            Files.createDirectories(location.getPath().toAbsolutePath().getParent());
+        } catch (IOException e) {
+            System.err.println("Verzeichnis der Datenbank konnte nicht angelegt werden: " + e.getMessage());
         }
     }
 
+    /**
+     * Datenbank der Anwendung am per {@link DatabaseLocation#fromConfiguration()} bestimmten Ort
+     */
     public static synchronized DatabaseManager getInstance() {
         if (instance == null) {
-            instance = new DatabaseManager();
+            instance = new DatabaseManager(DatabaseLocation.fromConfiguration());
         }
         return instance;
     }
 
+    public DatabaseLocation getLocation() {
+        return location;
+    }
+
+    /**
+     * Liefert die Schreibverbindung. Der aufrufende Thread hält sie exklusiv,
+     * bis die zurückgegebene Verbindung geschlossen wird.
+     */
     public Connection getConnection() throws SQLException {
+        ensureOpen();
+        writeLock.lock();
+        try {
+            if (writeConnection == null || writeConnection.isClosed()) {
+                writeConnection = openConnection(false);
+            }
+            return ConnectionLease.wrap(writeConnection, statementCacheFor(writeConnection), this::releaseWriteConnection);
+        } catch (SQLException | RuntimeException e) {
+            writeLock.unlock();
+            throw e;
+        }
+    }
+
+    private void releaseWriteConnection() {
+        try {
+            if (writeLock.getHoldCount() == 1 && writeConnection != null && !writeConnection.isClosed()) {
+                long totalChanges = writeConnection.unwrap(SQLiteConnection.class).getDatabase().total_changes();
+                if (totalChanges != lastTotalChanges) {
+                    lastTotalChanges = totalChanges;
+                    lastChangeMillis = System.currentTimeMillis();
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Änderungszähler nicht lesbar: " + e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Millisekunden seit der letzten Änderung an der Datenbank (bzw. seit dem Öffnen)
+     */
+    public long getMillisSinceLastChange() {
+        return System.currentTimeMillis() - lastChangeMillis;
+    }
+
+    /**
+     * Startet eine Transaktion auf der Schreibverbindung. Der aufrufende Thread hält die
+     * Schreibverbindung, bis die Transaktion geschlossen wird. Archive werden vorher eingebunden,
+     * da ATTACH innerhalb der Transaktion nicht möglich ist.
+     */
+    public Transaction beginTransaction() throws SQLException {
+        Connection conn = getConnection();
+        try {
+            if (activeTransaction != null) {
+                throw new SQLException("Auf diesem Thread läuft bereits eine Transaktion");
+            }
+            archives.attachBeforeTransaction(conn);
+            conn.setAutoCommit(false);
+            activeTransaction = new Transaction(conn, () -> activeTransaction = null);
+            return activeTransaction;
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Liefert die Transaktion des aktuellen Threads oder null
+     */
+    public Transaction currentTransaction() {
+        return writeLock.isHeldByCurrentThread() ? activeTransaction : null;
+    }
+
+    /**
+     * Markiert eine laufende Transaktion des aktuellen Threads als rollback-only.
+     * Ohne Transaktion passiert nichts.
+     */
+    void markRollbackOnly() {
+        Transaction tx = currentTransaction();
+        if (tx != null) {
+            tx.setRollbackOnly();
+        }
+    }
+
+    /**
+     * Liefert eine Leseverbindung aus dem Pool. Hält der aktuelle Thread bereits die
+     * Schreibverbindung, wird diese verwendet, damit eigene Änderungen sichtbar sind.
+     */
+    public Connection getReadConnection() throws SQLException {
+        ensureOpen();
+        if (writeLock.isHeldByCurrentThread() || readPoolSize == 0) {
+            return getConnection();
+        }
+
+        Connection physical = idleReadConnections.poll();
+        if (physical == null) {
+            synchronized (allReadConnections) {
+                if (allReadConnections.size() < readPoolSize) {
+                    physical = openConnection(true);
+                    allReadConnections.add(physical);
+                }
+            }
+        }
+        if (physical == null) {
+            try {
+                physical = idleReadConnections.poll(READ_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Warten auf Leseverbindung unterbrochen", e);
+            }
+            if (physical == null) {
+                throw new SQLException("Keine Leseverbindung verfügbar (Timeout)");
+            }
+        }
+
+        Connection pooled = physical;
+        return ConnectionLease.wrap(pooled, statementCacheFor(pooled), () -> idleReadConnections.offer(pooled));
+    }
+
+    /**
+     * true, wenn eine Leseverbindung dieses Threads die Schreibverbindung wäre und Schreibzugriffe anderer
+     * Threads blockieren würde, bis sie geschlossen wird (In-Memory-Datenbank ohne Lese-Pool)
+     */
+    boolean readsBlockWriters() {
+        return readPoolSize == 0 && !writeLock.isHeldByCurrentThread();
+    }
+
+    /**
+     * Eigene Leseverbindung außerhalb des Pools für lang laufende Arbeiten wie Sicherungen,
+     * damit sie keine Pool-Verbindung blockieren. Der Aufrufer schließt sie selbst.
+     */
+    Connection openBackupConnection() throws SQLException {
+        ensureOpen();
+        if (location.isInMemory()) {
+            throw new SQLException("Keine eigene Leseverbindung für In-Memory-Datenbanken");
+        }
+        return openConnection(true);
+    }
+
+    private StatementCache statementCacheFor(Connection physical) {
+        synchronized (statementCaches) {
+            return statementCaches.computeIfAbsent(physical, StatementCache::new);
+        }
+    }
+
+    /**
+     * Trefferquote aller Statement-Caches als lesbarer Text (Diagnose)
+     */
+    public String getStatementCacheStatistics() {
+        long hits = 0;
+        long misses = 0;
+        synchronized (statementCaches) {
+            for (StatementCache cache : statementCaches.values()) {
+                hits += cache.getHits();
+                misses += cache.getMisses();
+            }
+        }
+        return String.format("Statement-Cache: %d Treffer, %d neu vorbereitet", hits, misses);
+    }
+
+    DayCache getDayCache() {
+        return dayCache;
+    }
+
+    /**
+     * Schemas (main und ggf. archive_JJJJ), über die eine Abfrage von from bis to auf conn laufen muss.
+     * Benötigte Archive werden dabei eingebunden.
+     */
+    List<String> attachPartitions(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        return archives.attach(conn, from, to);
+    }
+
+    /**
+     * Bindet das Archiv eines Jahres zum Schreiben ein; die Datei wird bei Bedarf angelegt
+     */
+    String attachArchive(Connection conn, int year) throws SQLException {
+        return archives.attach(conn, year);
+    }
+
+    void archiveCreated(int year) {
+        archives.added(year);
+    }
+
+    /**
+     * Nach einem fehlgeschlagenen ersten Archivieren: Archiv lösen und die neue Datei wieder löschen
+     */
+    void archiveFailed(Connection conn, int year) {
+        archives.discard(conn, year);
+    }
+
+    /**
+     * Jahre, deren Einträge in eigene Archivdateien ausgelagert sind
+     */
+    public NavigableSet<Integer> getArchivedYears() {
+        return archives.getYears();
+    }
+
+    MutationJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Überträgt die noch offenen Ereignisse des Journals nach time_entries und gibt ihre Anzahl zurück.
+     * Innerhalb einer Transaktion des aktuellen Threads wird diese mitbenutzt.
+     */
+    public int compactJournal() throws SQLException {
+        try (Connection conn = getConnection()) {
+            return journal.compact(conn);
+        }
+    }
+
+    /**
+     * Trefferquote des Tages-Caches als lesbarer Text (Diagnose)
+     */
+    public String getDayCacheStatistics() {
+        return String.format("Tages-Cache: %d Treffer, %d aus der Datenbank geladen",
+                dayCache.getHits(), dayCache.getMisses());
+    }
+
+    private Connection openConnection(boolean readOnly) throws SQLException {
         try {
-            Connection conn = DriverManager.getConnection(DB_URL);
+            SQLiteConfig config = new SQLiteConfig();
+            config.setReadOnly(readOnly);
+            Connection conn = DriverManager.getConnection(location.getJdbcUrl(), config.toProperties());
+            try {
+                pragmaProfile.apply(conn, readOnly);
+            } catch (SQLException e) {
+                conn.close();
+                throw e;
+            }
             // Debugging nur beim ersten Mal
             if (!isInitialized) {
-                System.out.println("Erste Datenbankverbindung hergestellt zu: " + DB_URL);
+                System.out.println("Erste Datenbankverbindung hergestellt zu: " + location.getJdbcUrl());
+                System.out.println("Aktives " + pragmaProfile);
             }
             return conn;
         } catch (SQLException e) {
             System.err.println("Fehler beim Verbinden zur Datenbank: " + e.getMessage());
+            if (location.isInMemory()) {
+                throw e;
+            }
             System.err.println("Versuche Datenbankdatei zu erstellen...");
 
             // Versuche Datenbankdatei zu erstellen
-            File dbFile = new File(DB_NAME);
-            if (!dbFile.exists()) {
+            Path dbFile = location.getPath().toAbsolutePath();
+            if (!Files.exists(dbFile)) {
                 try {
-                    dbFile.createNewFile();
-                    System.out.println("Datenbankdatei erstellt: " + dbFile.getAbsolutePath());
-                } catch (Exception ex) {
+                    Files.createFile(dbFile);
+                    System.out.println("Datenbankdatei erstellt: " + dbFile);
+                } catch (IOException ex) {
                     System.err.println("Konnte Datenbankdatei nicht erstellen: " + ex.getMessage());
                 }
             }
@@ -61,10 +375,30 @@ public class DatabaseManager {
         }
     }
 
+    public PragmaProfile getPragmaProfile() {
+        return pragmaProfile;
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("DatabaseManager wurde bereits geschlossen");
+        }
+    }
+
     private void initializeDatabase() {
         try (Connection conn = getConnection()) {
-            createTables(conn);
-            System.out.println("Datenbank erfolgreich initialisiert: " + DB_NAME);
+            int version = new SchemaMigrator().migrate(conn);
+            archives.scan(conn);
+            // Rest aus einer abgebrochenen Sitzung oder aus dem Journal-Modus, auch wenn er jetzt aus ist
+            // (das Journal gibt es ab Schema-Version 9)
+            if (version >= 9) {
+                int compacted = journal.compact(conn);
+                if (compacted > 0) {
+                    System.out.println("Journal verdichtet: " + compacted + " Ereignisse");
+                }
+            }
+            System.out.println("Datenbank erfolgreich initialisiert: " + location + " (Schema-Version " + version + ")" +
+                    (journal.isEnabled() ? ", Journal-Modus" : ""));
         } catch (SQLException e) {
             System.err.println("Fehler beim Initialisieren der Datenbank: " + e.getMessage());
             System.err.println("Die Anwendung wird ohne Datenbankfunktionalität fortgesetzt.");
@@ -72,48 +406,6 @@ public class DatabaseManager {
         }
     }
 
-    private void createTables(Connection conn) throws SQLException {
-        String createTimeEntriesTable = """
-            CREATE TABLE IF NOT EXISTS time_entries (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                date TEXT NOT NULL,
-                start_time TEXT NOT NULL,
-                end_time TEXT,
-                description TEXT NOT NULL,
-                is_break BOOLEAN DEFAULT 0,
-                created_at TEXT DEFAULT CURRENT_TIMESTAMP
-            )
-        """;
-
-        String createConsolidatedEntriesTable = """
-            CREATE TABLE IF NOT EXISTS consolidated_entries (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                date TEXT NOT NULL,
-                start_time TEXT NOT NULL,
-                end_time TEXT NOT NULL,
-                description TEXT NOT NULL,
-                duration_minutes INTEGER NOT NULL,
-                created_at TEXT DEFAULT CURRENT_TIMESTAMP
-            )
-        """;
-
-        String createActivityDescriptionsTable = """
-            CREATE TABLE IF NOT EXISTS activity_descriptions (
-                id INTEGER PRIMARY KEY AUTOINCREMENT,
-                description TEXT UNIQUE NOT NULL,
-                usage_count INTEGER DEFAULT 1,
-                last_used TEXT DEFAULT CURRENT_TIMESTAMP
-            )
-        """;
-
-        try (Statement stmt = conn.createStatement()) {
-            stmt.execute(createTimeEntriesTable);
-            stmt.execute(createConsolidatedEntriesTable);
-            stmt.execute(createActivityDescriptionsTable);
-            System.out.println("Alle Datenbanktabellen erfolgreich erstellt/verifiziert");
-        }
-    }
-
     public boolean testConnection() {
         try (Connection conn = getConnection()) {
             return conn != null && !conn.isClosed();
@@ -124,7 +416,46 @@ public class DatabaseManager {
     }
 
     public void close() {
-        // SQLite schließt Verbindungen automatisch
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        synchronized (allReadConnections) {
+            for (Connection conn : allReadConnections) {
+                closeQuietly(conn);
+            }
+            allReadConnections.clear();
+            idleReadConnections.clear();
+        }
+
+        // Laufende Schreibvorgänge abwarten; die Schreibverbindung zuletzt schließen,
+        // damit sie das WAL zurückschreiben und entfernen kann
+        writeLock.lock();
+        try {
+            closeQuietly(writeConnection);
+            writeConnection = null;
+        } finally {
+            writeLock.unlock();
+        }
+
+        System.out.println(getDayCacheStatistics());
         System.out.println("Datenbankverbindungen geschlossen");
     }
+
+    private void closeQuietly(Connection conn) {
+        if (conn == null) return;
+        StatementCache cache;
+        synchronized (statementCaches) {
+            cache = statementCaches.remove(conn);
+        }
+        if (cache != null) {
+            cache.closeAll();
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Schließen der Datenbankverbindung: " + e.getMessage());
+        }
+    }
 }
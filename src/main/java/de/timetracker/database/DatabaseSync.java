@@ -0,0 +1,409 @@
+package de.timetracker.database;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gleicht die Datenbank mit einer anderen Zeiterfassungsdatei ab, z.B. der Kopie auf einem zweiten Rechner.
+ * In beide Richtungen werden nur die Einträge aus change_log übertragen, die sich seit dem letzten Abgleich
+ * geändert haben; pro Eintrag (uuid) gewinnt die zuletzt vorgenommene Änderung. Fehlt die andere Datei,
+ * wird sie angelegt und erhält den vollständigen Stand.
+ * Archivierte Jahre werden nicht abgeglichen: Änderungen an Einträgen, die auf der empfangenden Seite in einer
+ * Archivdatei liegen, werden übergangen, statt sie ein zweites Mal in die Hauptdatenbank einzufügen.
+ */
+public class DatabaseSync {
+    private static final String PEER_SCHEMA = "sync_peer";
+
+    /**
+     * Anzahl der übernommenen Änderungen je Richtung
+     */
+    public static final class SyncResult {
+        private final int received;
+        private final int sent;
+
+        private SyncResult(int received, int sent) {
+            this.received = received;
+            this.sent = sent;
+        }
+
+        public int getReceived() {
+            return received;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+    }
+
+    // Letzte Änderung eines Eintrags innerhalb des übertragenen Abschnitts von change_log
+    private static final class Change {
+        private final String table;
+        private final String uuid;
+        private final String operation;
+        private final String modifiedAt;
+        private final String origin;
+
+        private Change(ResultSet rs) throws SQLException {
+            this.table = rs.getString("table_name");
+            this.uuid = rs.getString("entry_uuid");
+            this.operation = rs.getString("operation");
+            this.modifiedAt = rs.getString("modified_at");
+            this.origin = rs.getString("origin");
+        }
+    }
+
+    private final DatabaseManager dbManager;
+
+    public DatabaseSync(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    /**
+     * Tauscht die Änderungen mit peerFile aus. Ohne laufende Transaktion aufzurufen, weil ATTACH
+     * in einer Transaktion nicht möglich ist.
+     */
+    public SyncResult syncWith(Path peerFile) throws SQLException {
+        if (dbManager.getLocation().isInMemory()) {
+            throw new SQLException("Synchronisation ist nur mit einer Datenbankdatei möglich");
+        }
+        if (isSameFile(dbManager.getLocation().getPath(), peerFile)) {
+            throw new SQLException("Die Datenbank kann nicht mit sich selbst synchronisiert werden");
+        }
+        Set<String> archivedInPeer = prepare(peerFile);
+
+        try (Connection conn = dbManager.getConnection()) {
+            if (!conn.getAutoCommit()) {
+                throw new SQLException("Synchronisieren ist innerhalb einer Transaktion nicht möglich");
+            }
+            // Abgeglichen wird über change_log, das erst beim Verdichten des Journals geschrieben wird
+            dbManager.getJournal().compact(conn);
+            // Vor dem ATTACH der anderen Datei, solange alle Plätze für Archive frei sind
+            Set<String> archivedHere = archivedEntries(dbManager, conn);
+            try (PreparedStatement pstmt = conn.prepareStatement("ATTACH DATABASE ? AS " + PEER_SCHEMA)) {
+                pstmt.setString(1, peerFile.toAbsolutePath().toString());
+                pstmt.execute();
+            }
+
+            try {
+                checkSchemaVersion(conn);
+                // Jede Richtung schreibt nur in eine Datei; Änderungen und Stand des Abgleichs
+                // werden dort gemeinsam festgeschrieben
+                int received = transfer(conn, PEER_SCHEMA, ArchivePartitions.MAIN_SCHEMA, archivedHere);
+                int sent = transfer(conn, ArchivePartitions.MAIN_SCHEMA, PEER_SCHEMA, archivedInPeer);
+
+                System.out.println("Synchronisiert mit " + peerFile + ": " + received + " Änderungen übernommen, " +
+                        sent + " übertragen");
+                return new SyncResult(received, sent);
+            } finally {
+                dbManager.getDayCache().invalidateAll();
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("DETACH DATABASE " + PEER_SCHEMA);
+                }
+            }
+        }
+    }
+
+    private static boolean isSameFile(Path a, Path b) {
+        try {
+            return Files.exists(b) && Files.isSameFile(a, b);
+        } catch (IOException e) {
+            return a.toAbsolutePath().normalize().equals(b.toAbsolutePath().normalize());
+        }
+    }
+
+    /**
+     * Legt die andere Datei bei Bedarf an, bringt ihr Schema auf denselben Stand und liefert die uuids
+     * der Einträge in ihren Archivdateien
+     */
+    private static Set<String> prepare(Path peerFile) throws SQLException {
+        DatabaseManager peer = new DatabaseManager(DatabaseLocation.file(peerFile));
+        try (Connection conn = peer.getConnection()) {
+            return archivedEntries(peer, conn);
+        } finally {
+            peer.close();
+        }
+    }
+
+    /**
+     * uuids aller Einträge in den Archivdateien von manager. Jedes Archiv wird dazu kurz auf conn eingebunden
+     * und wieder gelöst; conn muss die Schreibverbindung ohne Transaktion sein.
+     */
+    private static Set<String> archivedEntries(DatabaseManager manager, Connection conn) throws SQLException {
+        Set<String> uuids = new HashSet<>();
+        for (int year : manager.getArchivedYears()) {
+            LocalDate newYear = LocalDate.of(year, 1, 1);
+            for (String schema : manager.attachPartitions(conn, newYear, newYear)) {
+                if (schema.equals(ArchivePartitions.MAIN_SCHEMA)) continue;
+
+                try (Statement stmt = conn.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT uuid FROM " + schema + ".time_entries")) {
+                        while (rs.next()) {
+                            uuids.add(rs.getString(1));
+                        }
+                    }
+                    stmt.execute("DETACH DATABASE " + schema);
+                }
+            }
+        }
+        return uuids;
+    }
+
+    private static void checkSchemaVersion(Connection conn) throws SQLException {
+        int latest = new SchemaMigrator().getLatestVersion();
+        int own = SchemaMigrator.readUserVersion(conn);
+        int peer;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA " + PEER_SCHEMA + ".user_version")) {
+            peer = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (own != latest || peer != latest) {
+            throw new SQLException("Schema-Versionen passen nicht zusammen (eigene " + own + ", andere " + peer +
+                    ", erwartet " + latest + ")");
+        }
+    }
+
+    /**
+     * Übernimmt die neuen Änderungen von source nach target und gibt die Zahl der angewendeten zurück.
+     * Einträge aus archivedInTarget liegen in target in einer Archivdatei und werden nicht angefasst.
+     */
+    private int transfer(Connection conn, String source, String target, Set<String> archivedInTarget)
+            throws SQLException {
+        int applied = 0;
+        int skipped = 0;
+        conn.setAutoCommit(false);
+        try {
+            String sourceId = databaseId(conn, source);
+            long watermark = receivedSeq(conn, target, sourceId);
+            long lastSeq = lastSeq(conn, source);
+            if (lastSeq <= watermark) {
+                conn.commit();
+                return 0;
+            }
+
+            List<Change> changes = readChanges(conn, source, watermark, lastSeq);
+            setCapturePaused(conn, target, true);
+            for (Change change : changes) {
+                if (change.table.equals("time_entries") && archivedInTarget.contains(change.uuid)) {
+                    skipped++;
+                    continue;
+                }
+                if (!isNewer(conn, target, change)) continue;
+
+                boolean exists = change.operation.equals("upsert") && copyRow(conn, source, target, change);
+                if (!exists) {
+                    deleteRow(conn, target, change);
+                }
+                logChange(conn, target, change, exists ? "upsert" : "delete");
+                applied++;
+            }
+            setCapturePaused(conn, target, false);
+            saveReceivedSeq(conn, target, sourceId, lastSeq);
+            conn.commit();
+            if (skipped > 0) {
+                System.out.println(skipped + " Änderungen an archivierten Einträgen übergangen (" + target + ")");
+            }
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        return applied;
+    }
+
+    private static String databaseId(Connection conn, String schema) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT database_id FROM " + schema + ".sync_state")) {
+            if (!rs.next()) {
+                throw new SQLException("Datenbank ohne Kennung: " + schema);
+            }
+            return rs.getString(1);
+        }
+    }
+
+    private static long receivedSeq(Connection conn, String schema, String peerId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT received_seq FROM " + schema + ".sync_peers WHERE peer_id = ?")) {
+            pstmt.setString(1, peerId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private static long lastSeq(Connection conn, String schema) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(seq), 0) FROM " + schema + ".change_log")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Pro Eintrag nur die letzte Änderung; MAX(seq) bestimmt, aus welcher Zeile die übrigen Spalten stammen
+    private static List<Change> readChanges(Connection conn, String schema, long afterSeq, long lastSeq)
+            throws SQLException {
+        String sql = "SELECT table_name, entry_uuid, operation, modified_at, origin, MAX(seq) AS seq " +
+                "FROM " + schema + ".change_log WHERE seq > ? AND seq <= ? " +
+                "GROUP BY table_name, entry_uuid ORDER BY seq";
+        List<Change> changes = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, afterSeq);
+            pstmt.setLong(2, lastSeq);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new Change(rs));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Last-writer-wins: die Änderung gilt, wenn sie jünger ist als die letzte bekannte Änderung des Eintrags
+     * in target. Bei gleicher Zeit entscheidet die Kennung der Ursprungsdatenbank, damit beide Seiten
+     * zum selben Ergebnis kommen; dieselbe Änderung wird so nicht erneut angewendet.
+     */
+    private static boolean isNewer(Connection conn, String target, Change change) throws SQLException {
+        String sql = "SELECT modified_at, origin FROM " + target + ".change_log " +
+                "WHERE table_name = ? AND entry_uuid = ? ORDER BY seq DESC LIMIT 1";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, change.table);
+            pstmt.setString(2, change.uuid);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return true;
+
+                int byTime = change.modifiedAt.compareTo(rs.getString("modified_at"));
+                return byTime != 0 ? byTime > 0 : change.origin.compareTo(rs.getString("origin")) > 0;
+            }
+        }
+    }
+
+    /**
+     * Übernimmt den aktuellen Stand der Zeile aus source; false, wenn sie dort nicht mehr existiert
+     */
+    private static boolean copyRow(Connection conn, String source, String target, Change change)
+            throws SQLException {
+        if (change.table.equals("time_entries")) {
+            return copyTimeEntry(conn, source, target, change.uuid);
+        }
+        return copyConsolidatedEntry(conn, source, target, change.uuid);
+    }
+
+    private static boolean copyTimeEntry(Connection conn, String source, String target, String uuid)
+            throws SQLException {
+        String select = "SELECT t.date, t.start_time, t.end_time, t.is_break, t.created_at, " +
+                "d.description, d.usage_count, d.last_used " +
+                "FROM " + source + ".time_entries t " +
+                "JOIN " + source + ".activity_descriptions d ON d.id = t.description_id WHERE t.uuid = ?";
+        // Die IDs im Beschreibungsverzeichnis sind pro Datei vergeben, verbunden wird über den Text.
+        // Ein Abgleich ist keine Verwendung: Zähler und letzte Verwendung werden nur auf den höheren Stand
+        // der beiden Dateien gebracht
+        String upsertDescription = "INSERT INTO " + target + ".activity_descriptions (description, usage_count, last_used) " +
+                "VALUES (?, ?, ?) ON CONFLICT(description) DO UPDATE SET " +
+                "usage_count = MAX(usage_count, excluded.usage_count), " +
+                "last_used = MAX(COALESCE(last_used, excluded.last_used), COALESCE(excluded.last_used, last_used)) " +
+                "RETURNING id";
+        String upsertEntry = "INSERT INTO " + target + ".time_entries " +
+                "(uuid, date, start_time, end_time, description_id, is_break, created_at) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT(uuid) DO UPDATE SET date = excluded.date, start_time = excluded.start_time, " +
+                "end_time = excluded.end_time, description_id = excluded.description_id, is_break = excluded.is_break";
+
+        try (PreparedStatement selectStmt = conn.prepareStatement(select)) {
+            selectStmt.setString(1, uuid);
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                if (!rs.next()) return false;
+
+                int descriptionId;
+                try (PreparedStatement pstmt = conn.prepareStatement(upsertDescription)) {
+                    pstmt.setString(1, rs.getString("description"));
+                    pstmt.setInt(2, rs.getInt("usage_count"));
+                    pstmt.setString(3, rs.getString("last_used"));
+                    try (ResultSet ids = pstmt.executeQuery()) {
+                        ids.next();
+                        descriptionId = ids.getInt(1);
+                    }
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(upsertEntry)) {
+                    pstmt.setString(1, uuid);
+                    pstmt.setLong(2, rs.getLong("date"));
+                    pstmt.setLong(3, rs.getLong("start_time"));
+                    pstmt.setObject(4, rs.getObject("end_time"));
+                    pstmt.setInt(5, descriptionId);
+                    pstmt.setBoolean(6, rs.getBoolean("is_break"));
+                    pstmt.setString(7, rs.getString("created_at"));
+                    pstmt.executeUpdate();
+                }
+                return true;
+            }
+        }
+    }
+
+    private static boolean copyConsolidatedEntry(Connection conn, String source, String target, String uuid)
+            throws SQLException {
+        String sql = "INSERT INTO " + target + ".consolidated_entries " +
+                "(uuid, date, start_time, end_time, description, duration_minutes, created_at) " +
+                "SELECT uuid, date, start_time, end_time, description, duration_minutes, created_at " +
+                "FROM " + source + ".consolidated_entries WHERE uuid = ? " +
+                "ON CONFLICT(uuid) DO UPDATE SET date = excluded.date, start_time = excluded.start_time, " +
+                "end_time = excluded.end_time, description = excluded.description, " +
+                "duration_minutes = excluded.duration_minutes";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, uuid);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    private static void deleteRow(Connection conn, String target, Change change) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "DELETE FROM " + target + "." + change.table + " WHERE uuid = ?")) {
+            pstmt.setString(1, change.uuid);
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Mit Zeit und Ursprung der übernommenen Änderung, damit der Vergleich auf allen Geräten gleich ausfällt
+    private static void logChange(Connection conn, String target, Change change, String operation)
+            throws SQLException {
+        String sql = "INSERT INTO " + target + ".change_log (table_name, entry_uuid, operation, modified_at, origin) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, change.table);
+            pstmt.setString(2, change.uuid);
+            pstmt.setString(3, operation);
+            pstmt.setString(4, change.modifiedAt);
+            pstmt.setString(5, change.origin);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void setCapturePaused(Connection conn, String schema, boolean paused) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("UPDATE " + schema + ".sync_state SET capture_paused = " + (paused ? 1 : 0));
+        }
+    }
+
+    private static void saveReceivedSeq(Connection conn, String schema, String peerId, long seq)
+            throws SQLException {
+        String sql = "INSERT INTO " + schema + ".sync_peers (peer_id, received_seq, last_sync) VALUES (?, ?, ?) " +
+                "ON CONFLICT(peer_id) DO UPDATE SET received_seq = excluded.received_seq, last_sync = excluded.last_sync";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, peerId);
+            pstmt.setLong(2, seq);
+            pstmt.setString(3, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).toString());
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package de.timetracker.database;
+
+import de.timetracker.model.TimeEntry;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache der TimeEntries pro Tag. Der heutige Tag bleibt immer im Cache, vergangene Tage werden nach
+ * LRU verdrängt. Schreibzugriffe des DAOs aktualisieren den Cache nach ihrem Commit (write-through);
+ * zurückgerollte Änderungen erreichen ihn nie.
+ * Gespeichert und herausgegeben werden nur Kopien, damit Änderungen am Model den Cache nicht verfälschen.
+ */
+final class DayCache {
+    private static final int MAX_PAST_DAYS = 31;
+    private static final Comparator<TimeEntry> BY_START_TIME =
+            Comparator.comparing(TimeEntry::getStartTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparingInt(TimeEntry::getId);
+
+    private final LinkedHashMap<LocalDate, List<TimeEntry>> pastDays =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private LocalDate pinnedDate;
+    private List<TimeEntry> pinnedEntries;
+    private long version = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Kopien der gecachten Einträge des Tages oder null, wenn der Tag nicht im Cache ist
+     */
+    synchronized List<TimeEntry> get(LocalDate date) {
+        List<TimeEntry> entries = lookup(date);
+        if (entries == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copyOf(entries);
+    }
+
+    /**
+     * Stand des Caches vor dem Laden aus der Datenbank, siehe {@link #put}
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Übernimmt frisch geladene Einträge, sofern seit {@code loadedAtVersion} nichts geschrieben wurde;
+     * sonst könnte ein veraltetes Ergebnis eine neuere Änderung überdecken
+     */
+    synchronized void put(LocalDate date, List<TimeEntry> entries, long loadedAtVersion) {
+        if (loadedAtVersion != version) return;
+
+        List<TimeEntry> copies = copyOf(entries);
+        if (date.equals(LocalDate.now())) {
+            pin(date, copies);
+        } else {
+            pastDays.put(date, copies);
+            evictIfNeeded();
+        }
+    }
+
+    void inserted(TimeEntry entry) {
+        inserted(List.of(entry));
+    }
+
+    synchronized void inserted(List<TimeEntry> entries) {
+        version++;
+        for (TimeEntry entry : entries) {
+            addToDay(entry);
+        }
+    }
+
+    synchronized void updated(List<TimeEntry> entries) {
+        version++;
+        for (TimeEntry entry : entries) {
+            // Das Datum kann sich geändert haben: aus dem alten Tag entfernen, im neuen einsortieren
+            removeFromAllDays(entry.getId());
+            addToDay(entry);
+        }
+    }
+
+    synchronized void deleted(int id) {
+        version++;
+        removeFromAllDays(id);
+    }
+
+    /**
+     * Verwirft die Tage von from bis to (einschließlich), z.B. nach dem Archivieren eines Jahres
+     */
+    synchronized void invalidate(LocalDate from, LocalDate to) {
+        version++;
+        pastDays.keySet().removeIf(date -> !date.isBefore(from) && !date.isAfter(to));
+        if (pinnedDate != null && !pinnedDate.isBefore(from) && !pinnedDate.isAfter(to)) {
+            pinnedDate = null;
+            pinnedEntries = null;
+        }
+    }
+
+    synchronized void invalidateAll() {
+        version++;
+        pastDays.clear();
+        pinnedDate = null;
+        pinnedEntries = null;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private List<TimeEntry> lookup(LocalDate date) {
+        if (date.equals(pinnedDate)) {
+            return pinnedEntries;
+        }
+        List<TimeEntry> entries = pastDays.get(date);
+        if (entries != null && date.equals(LocalDate.now())) {
+            // Nach Mitternacht gecachter Tag ist jetzt heute
+            pastDays.remove(date);
+            pin(date, entries);
+        }
+        return entries;
+    }
+
+    private void pin(LocalDate date, List<TimeEntry> entries) {
+        if (pinnedDate != null && !pinnedDate.equals(date)) {
+            // Der bisher heutige Tag ist inzwischen Vergangenheit
+            pastDays.put(pinnedDate, pinnedEntries);
+            evictIfNeeded();
+        }
+        pinnedDate = date;
+        pinnedEntries = entries;
+    }
+
+    private void addToDay(TimeEntry entry) {
+        if (entry.getDate() == null) return;
+        List<TimeEntry> day = entry.getDate().equals(pinnedDate) ? pinnedEntries : pastDays.get(entry.getDate());
+        if (day == null) return; // Tag nicht im Cache, wird beim nächsten Lesen geladen
+
+        // Ein Leser kann den Eintrag nach dem Commit schon geladen haben
+        day.removeIf(cached -> entry.getId() > 0 && cached.getId() == entry.getId());
+        day.add(copy(entry));
+        day.sort(BY_START_TIME);
+    }
+
+    private void removeFromAllDays(int id) {
+        if (pinnedEntries != null) {
+            pinnedEntries.removeIf(cached -> cached.getId() == id);
+        }
+        for (List<TimeEntry> day : pastDays.values()) {
+            day.removeIf(cached -> cached.getId() == id);
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<LocalDate, List<TimeEntry>>> it = pastDays.entrySet().iterator();
+        while (pastDays.size() > MAX_PAST_DAYS && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // Uhrzeiten wie in der Datenbank nur sekundengenau, damit Cache und Datenbank dasselbe liefern
+    private static TimeEntry copy(TimeEntry entry) {
+        TimeEntry copy = new TimeEntry(entry);
+        copy.setStartTime(truncateToSeconds(entry.getStartTime()));
+        copy.setEndTime(truncateToSeconds(entry.getEndTime()));
+        return copy;
+    }
+
+    private static LocalTime truncateToSeconds(LocalTime time) {
+        return time != null ? time.truncatedTo(ChronoUnit.SECONDS) : null;
+    }
+
+    private static List<TimeEntry> copyOf(List<TimeEntry> entries) {
+        List<TimeEntry> copies = new ArrayList<>(entries.size());
+        for (TimeEntry entry : entries) {
+            copies.add(copy(entry));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,101 @@
+package de.timetracker.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verdichtet im Journal-Modus die offenen Ereignisse auf einem eigenen Thread nach time_entries
+ * (siehe MutationJournal). Verdichtet wird, sobald die Datenbank kurz unverändert war, damit eine Folge
+ * von Änderungen an denselben Einträgen (z.B. ein Verschieben in EditableTable) zu einem Schreibvorgang
+ * pro Zeile zusammenfällt, spätestens aber ab {@value #COMPACT_TAIL} Ereignissen. Beim Beenden wird der
+ * Rest verdichtet, so dass die Datei danach einen vollständigen Schnappschuss enthält.
+ * Ohne Journal-Modus tut die Klasse nichts.
+ */
+public class JournalCompactor {
+    private static final long CHECK_INTERVAL_SECONDS = 30;
+    private static final long IDLE_SECONDS = 60;
+    private static final int COMPACT_TAIL = 500;
+    private static final long SHUTDOWN_WAIT_SECONDS = 10;
+
+    private final DatabaseManager dbManager;
+    private final MutationJournal journal;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Länge des Journal-Endes beim letzten Lauf; nur vom Verdichtungs-Thread gelesen/geschrieben
+    private long lastTail = -1;
+    private long lastTailChangeMillis = System.currentTimeMillis();
+
+    public JournalCompactor(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        this.journal = dbManager.getJournal();
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "TimeTracker-Journal");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void start() {
+        if (!journal.isEnabled()) return;
+        executor.scheduleWithFixedDelay(this::compactIfDue,
+                CHECK_INTERVAL_SECONDS, CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Beendet den Thread und verdichtet die restlichen Ereignisse auf dem aufrufenden Thread.
+     * Vor dem Schließen des DatabaseManager und nach dem Abarbeiten ausstehender Schreibzugriffe aufzurufen.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Journal-Verdichtung nach " + SHUTDOWN_WAIT_SECONDS + " Sekunden nicht beendet");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!journal.isEnabled()) return;
+
+        try {
+            int compacted = dbManager.compactJournal();
+            if (compacted > 0) {
+                System.out.println("Journal beim Beenden verdichtet: " + compacted + " Ereignisse");
+            }
+        } catch (SQLException e) {
+            // Der Rest wird beim nächsten Öffnen verdichtet
+            System.err.println("Journal-Verdichtung beim Beenden fehlgeschlagen: " + e.getMessage());
+        }
+    }
+
+    private void compactIfDue() {
+        try {
+            long tail;
+            try (Connection conn = dbManager.getReadConnection()) {
+                tail = journal.tailLength(conn);
+            }
+            // Unverändert, solange seit dem letzten Lauf kein Ereignis hinzugekommen ist
+            long now = System.currentTimeMillis();
+            if (tail != lastTail) {
+                lastTail = tail;
+                lastTailChangeMillis = now;
+            }
+            boolean idle = now - lastTailChangeMillis >= TimeUnit.SECONDS.toMillis(IDLE_SECONDS);
+            if (tail == 0 || (tail < COMPACT_TAIL && !idle)) {
+                return;
+            }
+
+            long started = System.nanoTime();
+            int compacted = dbManager.compactJournal();
+            System.out.println("Journal verdichtet: " + compacted + " Ereignisse in "
+                    + (System.nanoTime() - started) / 1_000_000 + " ms");
+        } catch (SQLException | RuntimeException e) {
+            // Der nächste Lauf versucht es erneut
+            System.err.println("Journal-Verdichtung fehlgeschlagen: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package de.timetracker.database;
+
+import de.timetracker.model.TimeEntry;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Journal der Änderungen an time_entries (ab Schema-Version 9). Im Journal-Modus ändert TimeEntryDAO
+ * time_entries nicht an Ort und Stelle, sondern hängt Starten, Stoppen, Bearbeiten, Löschen und Nachtragen
+ * als kompakte Ereignisse mit dem vollständigen neuen Stand an entry_journal an; Konsolidierungen werden
+ * zusätzlich vermerkt. time_entries ist der Schnappschuss bis journal_state.compacted_seq, der Stand eines
+ * Tages ergibt sich aus dem Schnappschuss und den Ereignissen danach (siehe {@link #replay}).
+ * {@link #compact} überträgt diese Ereignisse in den Schnappschuss, pro Eintrag nur das letzte.
+ * Übertragene Ereignisse bleiben als Änderungsverlauf stehen.
+ * Eingeschaltet über die System-Property "timetracker.db.journal=true". Die Tabellen existieren immer;
+ * beim Öffnen wird ein verbliebener Rest verdichtet, so dass auch ohne Journal-Modus nichts verloren geht.
+ */
+final class MutationJournal {
+    static final String MODE_PROPERTY = "timetracker.db.journal";
+
+    enum Kind {
+        START(1), ADD(2), EDIT(3), STOP(4), DELETE(5), CONSOLIDATE(6);
+
+        private final int code;
+
+        Kind(int code) {
+            this.code = code;
+        }
+
+        static Kind of(int code) {
+            for (Kind kind : values()) {
+                if (kind.code == code) return kind;
+            }
+            throw new IllegalArgumentException("Unbekannte Ereignisart im Journal: " + code);
+        }
+    }
+
+    // Ab so vielen offenen Ereignissen verdichtet bereits der schreibende Aufruf, damit das Nachspielen kurz bleibt
+    static final int MAX_TAIL = 2000;
+
+    private static final String TAIL = "seq > (SELECT compacted_seq FROM journal_state)";
+    private static final String APPEND_SQL =
+            "INSERT INTO entry_journal (kind, entry_id, date, start_time, end_time, description_id, is_break) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String TAIL_LENGTH_SQL =
+            "SELECT COALESCE(MAX(seq), 0) - (SELECT compacted_seq FROM journal_state) FROM entry_journal";
+    private static final String LATEST_EVENT_SQL =
+            "SELECT kind, date, start_time, end_time, description_id, is_break FROM entry_journal " +
+            "WHERE " + TAIL + " AND entry_id = ? ORDER BY seq DESC LIMIT 1";
+    // IDs der Einträge mit offenen Ereignissen, z.B. um deren Zeilen im Schnappschuss zu übergehen
+    static final String PENDING_ENTRY_IDS_SQL =
+            "SELECT entry_id FROM entry_journal WHERE " + TAIL + " AND entry_id IS NOT NULL";
+    private static final String SNAPSHOT_ROW_SQL =
+            "SELECT date, start_time, end_time, description_id, is_break FROM main.time_entries WHERE id = ?";
+    // Auch IDs, die nur im Journal vergeben und dort wieder gelöscht wurden, werden nicht erneut vergeben
+    private static final String NEXT_ENTRY_ID_SQL =
+            "SELECT MAX(COALESCE((SELECT seq FROM sqlite_sequence WHERE name='time_entries'), 0), " +
+            "COALESCE((SELECT MAX(id) FROM time_entries), 0), " +
+            "COALESCE((SELECT MAX(entry_id) FROM entry_journal WHERE " + TAIL + "), 0)) + 1";
+    private static final String SELECT_TAIL_SQL =
+            "SELECT j.seq, j.kind, j.entry_id, j.date, j.start_time, j.end_time, j.description_id, " +
+            "d.description, j.is_break FROM entry_journal j " +
+            "LEFT JOIN main.activity_descriptions d ON d.id = j.description_id " +
+            "WHERE j." + TAIL + " ORDER BY j.seq";
+    private static final String UPSERT_SNAPSHOT_SQL =
+            "INSERT INTO time_entries (id, date, start_time, end_time, description_id, is_break) " +
+            "VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT(id) DO UPDATE SET date = excluded.date, " +
+            "start_time = excluded.start_time, end_time = excluded.end_time, " +
+            "description_id = excluded.description_id, is_break = excluded.is_break";
+
+    // Ein Ereignis aus dem noch nicht verdichteten Teil; entry ist bei DELETE und CONSOLIDATE null
+    private static final class Event {
+        private final long seq;
+        private final Kind kind;
+        private final int entryId;
+        private final TimeEntry entry;
+
+        private Event(ResultSet rs) throws SQLException {
+            this.seq = rs.getLong("seq");
+            this.kind = Kind.of(rs.getInt("kind"));
+            this.entryId = rs.getInt("entry_id");
+            this.entry = kind == Kind.DELETE || kind == Kind.CONSOLIDATE ? null : readState(rs, entryId);
+            if (entry != null) {
+                entry.setInternedDescription(rs.getInt("description_id"), rs.getString("description"));
+            }
+        }
+    }
+
+    private final boolean enabled;
+
+    MutationJournal(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    static boolean isConfigured() {
+        return Boolean.getBoolean(MODE_PROPERTY);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Erste ID, die ein neuer Eintrag erhalten darf, unter Berücksichtigung der offenen Ereignisse.
+     * Nur bei gehaltener Schreibverbindung stabil.
+     */
+    int nextEntryId(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(NEXT_ENTRY_ID_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 1;
+        }
+    }
+
+    /**
+     * Hängt den vollständigen neuen Stand eines Eintrags an (START, ADD, EDIT oder STOP)
+     */
+    void append(Connection conn, Kind kind, TimeEntry entry) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(APPEND_SQL)) {
+            pstmt.setInt(1, kind.code);
+            pstmt.setInt(2, entry.getId());
+            ColumnCodec.bindDate(pstmt, 3, entry.getDate());
+            ColumnCodec.bindTime(pstmt, 4, entry.getStartTime());
+            ColumnCodec.bindTime(pstmt, 5, entry.getEndTime());
+            pstmt.setInt(6, entry.getDescriptionId());
+            pstmt.setBoolean(7, entry.isBreak());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Vermerkt das Löschen; date ist der Tag, auf dem der Eintrag zuletzt lag
+     */
+    void appendDelete(Connection conn, int entryId, LocalDate date) throws SQLException {
+        appendMarker(conn, Kind.DELETE, entryId, date);
+    }
+
+    /**
+     * Vermerkt das Konsolidieren eines Tages. Die konsolidierten Einträge selbst stehen weiterhin direkt
+     * in consolidated_entries; das Ereignis dient nur dem Änderungsverlauf.
+     */
+    void appendConsolidation(Connection conn, LocalDate date) throws SQLException {
+        appendMarker(conn, Kind.CONSOLIDATE, 0, date);
+    }
+
+    private void appendMarker(Connection conn, Kind kind, int entryId, LocalDate date) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(APPEND_SQL)) {
+            pstmt.setInt(1, kind.code);
+            if (entryId > 0) {
+                pstmt.setInt(2, entryId);
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            ColumnCodec.bindDate(pstmt, 3, date);
+            for (int index = 4; index <= 7; index++) {
+                pstmt.setNull(index, Types.INTEGER);
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Aktueller Stand eines Eintrags der Hauptdatenbank (ohne Beschreibungstext) oder null, wenn er nicht
+     * existiert. Das letzte offene Ereignis hat Vorrang vor dem Schnappschuss.
+     */
+    TimeEntry current(Connection conn, int entryId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(LATEST_EVENT_SQL)) {
+            pstmt.setInt(1, entryId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return Kind.of(rs.getInt("kind")) == Kind.DELETE ? null : readState(rs, entryId);
+                }
+            }
+        }
+        return snapshot(conn, entryId);
+    }
+
+    /**
+     * Stand eines Eintrags im Schnappschuss der Hauptdatenbank (ohne Beschreibungstext) oder null
+     */
+    TimeEntry snapshot(Connection conn, int entryId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SNAPSHOT_ROW_SQL)) {
+            pstmt.setInt(1, entryId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readState(rs, entryId) : null;
+            }
+        }
+    }
+
+    /**
+     * Spielt die offenen Ereignisse über die aus dem Schnappschuss geladenen Einträge nach ID.
+     * Einträge, deren neuer Stand nicht mehr zur Abfrage passt (z.B. auf einen anderen Tag verschoben),
+     * werden entfernt, passende hinzugefügt. Schnappschuss und Ereignisse müssen in derselben
+     * Lesetransaktion gelesen werden, sonst kann eine Verdichtung dazwischen Ereignisse doppelt anwenden.
+     */
+    void replay(Connection conn, Map<Integer, TimeEntry> entries, Predicate<TimeEntry> matches) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_TAIL_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Event event = new Event(rs);
+                if (event.kind == Kind.CONSOLIDATE) continue;
+
+                if (event.entry != null && matches.test(event.entry)) {
+                    entries.put(event.entryId, event.entry);
+                } else {
+                    entries.remove(event.entryId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Letzter Stand jedes Eintrags mit offenen Ereignissen (mit Beschreibungstext) in der Reihenfolge seines
+     * letzten Ereignisses, null bei gelöschten Einträgen. Für Abfragen, die den Schnappschuss nicht als Liste
+     * laden; wie bei {@link #replay} in derselben Lesetransaktion wie den Schnappschuss zu lesen.
+     */
+    Map<Integer, TimeEntry> pendingStates(Connection conn) throws SQLException {
+        Map<Integer, TimeEntry> states = new LinkedHashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_TAIL_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Event event = new Event(rs);
+                if (event.kind == Kind.CONSOLIDATE) continue;
+
+                states.remove(event.entryId); // Reihenfolge des letzten Ereignisses
+                states.put(event.entryId, event.entry);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Anzahl der noch nicht verdichteten Ereignisse
+     */
+    long tailLength(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(TAIL_LENGTH_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Überträgt die offenen Ereignisse nach time_entries und gibt ihre Anzahl zurück. Pro Eintrag wird nur
+     * der letzte Stand geschrieben, eine Folge von Änderungen an einer Zeile kostet so ein UPDATE.
+     * Die Trigger für Tagessummen und change_log laufen dabei wie bei einer direkten Änderung.
+     * Läuft in der Transaktion der Verbindung bzw. in einer eigenen.
+     */
+    int compact(Connection conn) throws SQLException {
+        boolean ownTransaction = conn.getAutoCommit();
+        if (ownTransaction) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            int compacted = applyTail(conn);
+            if (ownTransaction) {
+                conn.commit();
+            }
+            return compacted;
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private int applyTail(Connection conn) throws SQLException {
+        Map<Integer, Event> latest = new LinkedHashMap<>();
+        int count = 0;
+        long lastSeq = 0;
+        int maxEntryId = 0;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_TAIL_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                Event event = new Event(rs);
+                count++;
+                lastSeq = event.seq;
+                if (event.kind == Kind.CONSOLIDATE) continue;
+
+                latest.remove(event.entryId); // Reihenfolge des letzten Ereignisses
+                latest.put(event.entryId, event);
+                maxEntryId = Math.max(maxEntryId, event.entryId);
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        try (PreparedStatement upsert = conn.prepareStatement(UPSERT_SNAPSHOT_SQL);
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM time_entries WHERE id = ?")) {
+            for (Event event : latest.values()) {
+                if (event.entry == null) {
+                    delete.setInt(1, event.entryId);
+                    delete.executeUpdate();
+                } else {
+                    upsert.setInt(1, event.entryId);
+                    ColumnCodec.bindDate(upsert, 2, event.entry.getDate());
+                    ColumnCodec.bindTime(upsert, 3, event.entry.getStartTime());
+                    ColumnCodec.bindTime(upsert, 4, event.entry.getEndTime());
+                    upsert.setInt(5, event.entry.getDescriptionId());
+                    upsert.setBoolean(6, event.entry.isBreak());
+                    upsert.executeUpdate();
+                }
+            }
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            // Im Journal vergebene und wieder gelöschte IDs hat AUTOINCREMENT nie gesehen
+            if (stmt.executeUpdate("UPDATE sqlite_sequence SET seq = MAX(seq, " + maxEntryId + ") " +
+                    "WHERE name = 'time_entries'") == 0 && maxEntryId > 0) {
+                stmt.executeUpdate("INSERT INTO sqlite_sequence (name, seq) VALUES ('time_entries', " + maxEntryId + ")");
+            }
+            stmt.executeUpdate("UPDATE journal_state SET compacted_seq = " + lastSeq + ", compacted_at = unixepoch()");
+        }
+        return count;
+    }
+
+    private static TimeEntry readState(ResultSet rs, int entryId) throws SQLException {
+        TimeEntry entry = new TimeEntry();
+        entry.setId(entryId);
+        entry.setDate(ColumnCodec.readDate(rs, "date"));
+        entry.setStartTime(ColumnCodec.readTime(rs, "start_time"));
+        entry.setEndTime(ColumnCodec.readTime(rs, "end_time"));
+        entry.setInternedDescription(rs.getInt("description_id"), null);
+        entry.setBreak(rs.getBoolean("is_break"));
+        return entry;
+    }
+}
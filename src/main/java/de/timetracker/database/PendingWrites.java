@@ -0,0 +1,171 @@
+package de.timetracker.database;
+
+import de.timetracker.model.TimeEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Vorgemerkte Schreibzugriffe auf Zeiteinträge. Beim Vormerken wird eine Kopie des Eintrags festgehalten;
+ * der I/O-Thread arbeitet nur mit diesen Kopien, die Einträge des Models bleiben dem EDT vorbehalten.
+ * Ob ein Eintrag eingefügt oder aktualisiert wird, entscheidet sich erst beim Anwenden auf dem I/O-Thread.
+ * Mehrfache Änderungen desselben Eintrags werden zu einem Schreibzugriff zusammengefasst.
+ */
+public final class PendingWrites {
+    private static final class Write {
+        private final TimeEntry entry;     // Eintrag des Models, nur auf dem EDT lesen und schreiben
+        private final TimeEntry snapshot;  // Stand beim Vormerken, wird auf dem I/O-Thread gespeichert
+        private final String description;  // Beschreibung beim Vormerken, zum Erkennen späterer Änderungen
+
+        private Write(TimeEntry entry) {
+            this.entry = entry;
+            this.snapshot = new TimeEntry(entry);
+            this.description = entry.getDescription();
+        }
+    }
+
+    private final List<Write> saves = new ArrayList<>();
+    private final List<Write> deletes = new ArrayList<>();
+
+    public void save(List<TimeEntry> entries) {
+        for (TimeEntry entry : entries) {
+            save(entry);
+        }
+    }
+
+    /**
+     * Merkt den aktuellen Stand des Eintrags vor; spätere Änderungen am Eintrag brauchen einen erneuten Aufruf
+     */
+    public void save(TimeEntry entry) {
+        save(new Write(entry));
+    }
+
+    private void save(Write write) {
+        if (indexOfSame(deletes, write.entry) >= 0) return;
+
+        int index = indexOfSame(saves, write.entry);
+        if (index < 0) {
+            saves.add(write);
+        } else {
+            // Neuerer Stand bzw. neuere Instanz mit gleicher ID (z.B. nach Neuladen) ersetzt den älteren
+            saves.set(index, write);
+        }
+    }
+
+    public void delete(TimeEntry entry) {
+        delete(new Write(entry));
+    }
+
+    private void delete(Write write) {
+        saves.removeIf(saved -> isSame(saved.entry, write.entry));
+        if (indexOfSame(deletes, write.entry) < 0) {
+            deletes.add(write);
+        }
+    }
+
+    /**
+     * Übernimmt die Schreibzugriffe eines anderen Stapels; spätere Änderungen überschreiben frühere
+     */
+    public void mergeFrom(PendingWrites other) {
+        for (Write write : other.deletes) {
+            delete(write);
+        }
+        for (Write write : other.saves) {
+            save(write);
+        }
+    }
+
+    public boolean isEmpty() {
+        return saves.isEmpty() && deletes.isEmpty();
+    }
+
+    public int size() {
+        return saves.size() + deletes.size();
+    }
+
+    /**
+     * Wendet alle Schreibzugriffe an; muss innerhalb einer Transaktion des DAOs aufgerufen werden.
+     * Ergebnisse (IDs, gespeicherte Beschreibungen) landen nur in den Kopien, siehe {@link #publish()}.
+     *
+     * @return false, wenn ein Zugriff fehlgeschlagen ist oder keine Zeile getroffen hat (z.B. ein bereits
+     * gelöschter Eintrag oder einer in einem archivierten Jahr); die Transaktion ist dann zurückzurollen
+     */
+    public boolean applyTo(TimeEntryDAO sync) {
+        boolean applied = true;
+        for (Write write : deletes) {
+            if (write.snapshot.getId() > 0) {
+                applied &= sync.deleteTimeEntry(write.snapshot.getId());
+            }
+        }
+
+        List<TimeEntry> toUpdate = new ArrayList<>();
+        List<TimeEntry> toInsert = new ArrayList<>();
+        for (Write write : saves) {
+            (write.snapshot.getId() > 0 ? toUpdate : toInsert).add(write.snapshot);
+        }
+        applied &= sync.updateTimeEntries(toUpdate);
+        applied &= sync.insertTimeEntries(toInsert);
+        return applied;
+    }
+
+    /**
+     * Setzt die IDs von Einträgen, die bereits eingefügt wurden, deren ID aber noch nicht per
+     * {@link #publish()} im Model angekommen ist (Schlüssel: Eintrag des Models). Läuft auf dem I/O-Thread.
+     */
+    void resolveIds(Map<TimeEntry, Integer> insertedIds) {
+        for (List<Write> writes : List.of(saves, deletes)) {
+            for (Write write : writes) {
+                Integer id = insertedIds.get(write.entry);
+                if (write.snapshot.getId() == 0 && id != null) {
+                    write.snapshot.setId(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merkt nach dem Commit die IDs neu eingefügter Einträge vor. Läuft auf dem I/O-Thread.
+     */
+    void recordIds(Map<TimeEntry, Integer> insertedIds) {
+        for (Write write : saves) {
+            if (write.snapshot.getId() > 0) {
+                insertedIds.put(write.entry, write.snapshot.getId());
+            }
+        }
+    }
+
+    void forgetIds(Map<TimeEntry, Integer> insertedIds) {
+        for (Write write : saves) {
+            insertedIds.remove(write.entry);
+        }
+    }
+
+    /**
+     * Überträgt nach dem Commit IDs und gespeicherte Beschreibungen in die Einträge des Models.
+     * Muss auf dem EDT laufen. Eine inzwischen geänderte Beschreibung bleibt unangetastet.
+     */
+    public void publish() {
+        for (Write write : saves) {
+            if (write.entry.getId() == 0) {
+                write.entry.setId(write.snapshot.getId());
+            }
+            if (Objects.equals(write.entry.getDescription(), write.description)) {
+                write.entry.setInternedDescription(write.snapshot.getDescriptionId(), write.snapshot.getDescription());
+            }
+        }
+    }
+
+    // TimeEntry.equals vergleicht IDs, neue Einträge (ID 0) wären sonst alle gleich
+    private static boolean isSame(TimeEntry a, TimeEntry b) {
+        return a == b || (a.getId() > 0 && a.getId() == b.getId());
+    }
+
+    private static int indexOfSame(List<Write> list, TimeEntry entry) {
+        for (int i = 0; i < list.size(); i++) {
+            if (isSame(list.get(i).entry, entry)) return i;
+        }
+        return -1;
+    }
+}
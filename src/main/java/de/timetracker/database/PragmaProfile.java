@@ -0,0 +1,119 @@
+package de.timetracker.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Satz von SQLite-PRAGMAs, der beim Öffnen jeder Verbindung angewendet wird.
+ * Auswahl über die System-Property "timetracker.db.profile" (durable | fast).
+ */
+public final class PragmaProfile {
+    public static final String PROFILE_PROPERTY = "timetracker.db.profile";
+
+    /** WAL mit vollem fsync bei jedem Commit - kein Datenverlust bei Stromausfall */
+    public static final PragmaProfile DURABLE = new PragmaProfile(
+            "durable", "WAL", "FULL", -8_000, 0L, "DEFAULT", 5_000);
+
+    /** WAL mit fsync nur beim Checkpoint - konsistent, letzte Commits können bei Stromausfall fehlen */
+    public static final PragmaProfile FAST = new PragmaProfile(
+            "fast", "WAL", "NORMAL", -32_000, 256L * 1024 * 1024, "MEMORY", 5_000);
+
+    private final String name;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeoutMillis;
+
+    /**
+     * @param cacheSize negativ = KiB, positiv = Anzahl Seiten (SQLite-Semantik)
+     * @param mmapSize  Bytes, 0 deaktiviert Memory-Mapping
+     */
+    public PragmaProfile(String name, String journalMode, String synchronous, int cacheSize,
+                         long mmapSize, String tempStore, int busyTimeoutMillis) {
+        this.name = name;
+        this.journalMode = journalMode;
+        this.synchronous = synchronous;
+        this.cacheSize = cacheSize;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    /**
+     * Liefert das per System-Property gewählte Profil, Standard ist FAST
+     */
+    public static PragmaProfile fromSystemProperty() {
+        return fromName(System.getProperty(PROFILE_PROPERTY));
+    }
+
+    public static PragmaProfile fromName(String name) {
+        if (name != null && name.trim().equalsIgnoreCase(DURABLE.name)) {
+            return DURABLE;
+        }
+        return FAST;
+    }
+
+    /**
+     * Wendet das Profil auf eine frisch geöffnete Verbindung an.
+     * Journal-Modus wird nur über schreibende Verbindungen gesetzt, da er in der Datei persistiert.
+     */
+    void apply(Connection conn, boolean readOnly) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+
+            if (!readOnly) {
+                // Wirkt nur in einer leeren Datei und muss dort vor dem Journal-Modus stehen;
+                // bestehende Dateien stellt DatabaseMaintenance per VACUUM um
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                try (ResultSet rs = stmt.executeQuery("PRAGMA journal_mode = " + journalMode)) {
+                    if (rs.next() && !journalMode.equalsIgnoreCase(rs.getString(1))) {
+                        System.out.println("Journal-Modus " + journalMode + " nicht verfügbar, aktiv: " + rs.getString(1));
+                    }
+                }
+            }
+
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PragmaProfile{%s: journal=%s, synchronous=%s, cache=%d, mmap=%d, temp=%s, busy=%dms}",
+                name, journalMode, synchronous, cacheSize, mmapSize, tempStore, busyTimeoutMillis);
+    }
+}
@@ -0,0 +1,770 @@
+package de.timetracker.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Versionierte Schema-Migrationen. Die aktuelle Version steht in PRAGMA user_version;
+ * jede Migration läuft in einer eigenen Transaktion und ist idempotent formuliert.
+ */
+final class SchemaMigrator {
+    // Tabellen, deren Änderungen change_log erfasst (siehe DatabaseSync)
+    static final List<String> SYNCED_TABLES = List.of("time_entries", "consolidated_entries");
+
+    @FunctionalInterface
+    interface MigrationStep {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final MigrationStep step;
+
+        private Migration(int version, String description, MigrationStep step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+    SchemaMigrator() {
+        register(1, "Basistabellen", SchemaMigrator::createBaseTables);
+        register(2, "Indizes für Tages- und Aktivabfragen", SchemaMigrator::createLookupIndexes);
+        register(3, "Beschreibungen eindeutig ohne Groß-/Kleinschreibung", SchemaMigrator::makeDescriptionsCaseInsensitive);
+        register(4, "Datum und Uhrzeiten als Integer", SchemaMigrator::encodeTemporalColumnsAsIntegers);
+        register(5, "Tagessummen per Trigger", SchemaMigrator::createDailySummary);
+        register(6, "Beschreibungen als Verzeichnis", SchemaMigrator::referenceDescriptionsById);
+        register(7, "Volltextsuche über Beschreibungen", SchemaMigrator::createDescriptionSearch);
+        register(8, "Änderungsprotokoll für die Synchronisation", SchemaMigrator::createChangeLog);
+        register(9, "Ereignis-Journal für Einträge", SchemaMigrator::createEntryJournal);
+        register(10, "Protokoll der Datenbankwartung", SchemaMigrator::createMaintenanceLog);
+    }
+
+    private void register(int version, String description, MigrationStep step) {
+        if (!migrations.isEmpty() && migrations.get(migrations.size() - 1).version >= version) {
+            throw new IllegalStateException("Migrationen müssen aufsteigend registriert werden: " + version);
+        }
+        migrations.add(new Migration(version, description, step));
+    }
+
+    int getLatestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+    }
+
+    /**
+     * Bringt das Schema auf den neuesten Stand und gibt die erreichte Version zurück
+     */
+    int migrate(Connection conn) throws SQLException {
+        int currentVersion = readUserVersion(conn);
+
+        if (currentVersion > getLatestVersion()) {
+            System.err.println("Datenbank-Schema (Version " + currentVersion +
+                    ") ist neuer als diese Anwendung (Version " + getLatestVersion() + ")");
+            return currentVersion;
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (Migration migration : migrations) {
+                if (migration.version <= currentVersion) continue;
+
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    migration.step.apply(stmt);
+                    stmt.execute("PRAGMA user_version = " + migration.version);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw new SQLException("Migration " + migration.version + " (" +
+                            migration.description + ") fehlgeschlagen: " + e.getMessage(), e);
+                }
+
+                currentVersion = migration.version;
+                System.out.println("Schema-Migration " + migration.version + " angewendet: " + migration.description);
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+
+        return currentVersion;
+    }
+
+    static int readUserVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Migrationen
+
+    private static void createBaseTables(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS time_entries (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date TEXT NOT NULL,
+                start_time TEXT NOT NULL,
+                end_time TEXT,
+                description TEXT NOT NULL,
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS consolidated_entries (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date TEXT NOT NULL,
+                start_time TEXT NOT NULL,
+                end_time TEXT NOT NULL,
+                description TEXT NOT NULL,
+                duration_minutes INTEGER NOT NULL,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS activity_descriptions (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                description TEXT UNIQUE NOT NULL,
+                usage_count INTEGER DEFAULT 1,
+                last_used TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+    }
+
+    private static void createLookupIndexes(Statement stmt) throws SQLException {
+        // getTimeEntriesByDate: WHERE date=? ORDER BY start_time
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_time_entries_date_start ON time_entries(date, start_time)");
+        // getActiveTimeEntry: WHERE end_time IS NULL ORDER BY start_time DESC
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_time_entries_open ON time_entries(start_time) WHERE end_time IS NULL");
+        // getConsolidatedEntriesByDate / deleteConsolidatedEntriesByDate
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_consolidated_entries_date ON consolidated_entries(date, start_time)");
+    }
+
+    private static void makeDescriptionsCaseInsensitive(Statement stmt) throws SQLException {
+        stmt.execute("DROP TABLE IF EXISTS activity_descriptions_new");
+        stmt.execute("""
+            CREATE TABLE activity_descriptions_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                description TEXT NOT NULL COLLATE NOCASE UNIQUE,
+                usage_count INTEGER DEFAULT 1,
+                last_used TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+
+        // Bisherige Dubletten (nur in Groß-/Kleinschreibung verschieden) zusammenführen,
+        // die zuerst angelegte Schreibweise bleibt erhalten. Die Schreibweise wird über die ID
+        // nachgeschlagen: eine bloße Spalte neben mehreren Aggregaten stammt aus einer beliebigen Zeile.
+        stmt.execute("""
+            INSERT INTO activity_descriptions_new (id, description, usage_count, last_used)
+            SELECT g.first_id,
+                   (SELECT TRIM(d.description) FROM activity_descriptions d WHERE d.id = g.first_id),
+                   g.usage_count, g.last_used
+            FROM (
+                SELECT MIN(id) AS first_id, SUM(usage_count) AS usage_count, MAX(last_used) AS last_used
+                FROM activity_descriptions
+                WHERE TRIM(description) <> ''
+                GROUP BY TRIM(description) COLLATE NOCASE
+            ) g
+        """);
+
+        stmt.execute("DROP TABLE activity_descriptions");
+        stmt.execute("ALTER TABLE activity_descriptions_new RENAME TO activity_descriptions");
+    }
+
+    /**
+     * Datum als Epoch-Day, Start/Ende als Sekunde des Tages (siehe ColumnCodec).
+     * Nachkommastellen der Sekunden entfallen.
+     */
+    private static void encodeTemporalColumnsAsIntegers(Statement stmt) throws SQLException {
+        stmt.execute("DROP TABLE IF EXISTS time_entries_new");
+        stmt.execute("""
+            CREATE TABLE time_entries_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER,
+                description TEXT NOT NULL,
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        stmt.execute("""
+            INSERT INTO time_entries_new (id, date, start_time, end_time, description, is_break, created_at)
+            SELECT id, %s, %s, %s, description, is_break, created_at
+            FROM time_entries
+        """.formatted(epochDaySql("date"), secondOfDaySql("start_time"), secondOfDaySql("end_time")));
+        replaceTable(stmt, "time_entries");
+
+        stmt.execute("DROP TABLE IF EXISTS consolidated_entries_new");
+        stmt.execute("""
+            CREATE TABLE consolidated_entries_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER NOT NULL,
+                description TEXT NOT NULL,
+                duration_minutes INTEGER NOT NULL,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        stmt.execute("""
+            INSERT INTO consolidated_entries_new (id, date, start_time, end_time, description, duration_minutes, created_at)
+            SELECT id, %s, %s, %s, description, duration_minutes, created_at
+            FROM consolidated_entries
+        """.formatted(epochDaySql("date"), secondOfDaySql("start_time"), secondOfDaySql("end_time")));
+        replaceTable(stmt, "consolidated_entries");
+
+        // Indizes hingen an den alten Tabellen
+        createLookupIndexes(stmt);
+    }
+
+    /**
+     * daily_summary enthält pro Tag die Summen wie in TimeEntryDAO.getDayStatistics (nur abgeschlossene
+     * Einträge zählen zu den Minuten) und ob der Tag abgeschlossen ist. Trigger halten die Zeilen in
+     * derselben Transaktion wie die Änderung an time_entries bzw. consolidated_entries aktuell.
+     */
+    private static void createDailySummary(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS daily_summary (
+                date INTEGER PRIMARY KEY,
+                work_minutes INTEGER NOT NULL DEFAULT 0,
+                break_minutes INTEGER NOT NULL DEFAULT 0,
+                entry_count INTEGER NOT NULL DEFAULT 0,
+                closed INTEGER NOT NULL DEFAULT 0
+            )
+        """);
+        createDailySummaryTriggers(stmt);
+        rebuildDailySummary(stmt);
+    }
+
+    /**
+     * Legt die Trigger für daily_summary an. Muss nach jedem Neuaufbau von time_entries oder
+     * consolidated_entries erneut aufgerufen werden, da DROP TABLE die Trigger mitlöscht.
+     */
+    static void createDailySummaryTriggers(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_time_entries_summary_insert
+            AFTER INSERT ON time_entries
+            BEGIN
+                %s
+            END
+        """.formatted(addToSummarySql("NEW")));
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_time_entries_summary_delete
+            AFTER DELETE ON time_entries
+            BEGIN
+                %s
+            END
+        """.formatted(removeFromSummarySql("OLD")));
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_time_entries_summary_update
+            AFTER UPDATE OF date, start_time, end_time, is_break ON time_entries
+            BEGIN
+                %s
+                %s
+            END
+        """.formatted(removeFromSummarySql("OLD"), addToSummarySql("NEW")));
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_consolidated_entries_summary_insert
+            AFTER INSERT ON consolidated_entries
+            BEGIN
+                INSERT INTO daily_summary (date, closed) VALUES (NEW.date, 1)
+                ON CONFLICT(date) DO UPDATE SET closed = 1;
+            END
+        """);
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_consolidated_entries_summary_delete
+            AFTER DELETE ON consolidated_entries
+            BEGIN
+                UPDATE daily_summary
+                SET closed = EXISTS (SELECT 1 FROM consolidated_entries WHERE date = OLD.date)
+                WHERE date = OLD.date;
+                DELETE FROM daily_summary WHERE date = OLD.date AND entry_count <= 0 AND closed = 0;
+            END
+        """);
+    }
+
+    /**
+     * time_entries speichert statt des Textes die ID der Beschreibung in activity_descriptions.
+     * Das Verzeichnis unterscheidet dazu wieder Groß-/Kleinschreibung (BINARY, wie String.equals in
+     * TimeEntryDAO): jede Schreibweise erhält eine eigene ID, damit ein Eintrag seinen Text behält.
+     * Fehlende Schreibweisen werden angelegt.
+     */
+    private static void referenceDescriptionsById(Statement stmt) throws SQLException {
+        stmt.execute("DROP TABLE IF EXISTS activity_descriptions_new");
+        stmt.execute("""
+            CREATE TABLE activity_descriptions_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                description TEXT NOT NULL UNIQUE,
+                usage_count INTEGER DEFAULT 1,
+                last_used TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        stmt.execute("""
+            INSERT INTO activity_descriptions_new (id, description, usage_count, last_used)
+            SELECT id, description, usage_count, last_used FROM activity_descriptions
+        """);
+        replaceTable(stmt, "activity_descriptions");
+
+        // Weitere Schreibweisen aus time_entries zählen nicht als neue Verwendung
+        stmt.execute("""
+            INSERT INTO activity_descriptions (description, usage_count, last_used)
+            SELECT DISTINCT TRIM(description), 0, strftime('%Y-%m-%dT%H:%M:%S', 'now', 'localtime')
+            FROM time_entries WHERE true
+            ON CONFLICT(description) DO NOTHING
+        """);
+
+        stmt.execute("DROP TABLE IF EXISTS time_entries_new");
+        stmt.execute("""
+            CREATE TABLE time_entries_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER,
+                description_id INTEGER NOT NULL REFERENCES activity_descriptions(id),
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP
+            )
+        """);
+        // Exakter Vergleich: jeder Eintrag behält seine Schreibweise
+        stmt.execute("""
+            INSERT INTO time_entries_new (id, date, start_time, end_time, description_id, is_break, created_at)
+            SELECT t.id, t.date, t.start_time, t.end_time, d.id, t.is_break, t.created_at
+            FROM time_entries t
+            JOIN activity_descriptions d ON d.description = TRIM(t.description)
+        """);
+        replaceTable(stmt, "time_entries");
+
+        // Indizes und Trigger hingen an der alten Tabelle
+        createLookupIndexes(stmt);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_time_entries_description ON time_entries(description_id)");
+        createDailySummaryTriggers(stmt);
+    }
+
+    /**
+     * FTS5-Index über das Beschreibungsverzeichnis (external content, ohne Kopie der Texte).
+     * Einträge werden über description_id gefunden, der Index bleibt so klein wie das Verzeichnis.
+     * Umlaute und Akzente werden beim Suchen ignoriert.
+     */
+    private static void createDescriptionSearch(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE VIRTUAL TABLE IF NOT EXISTS description_search USING fts5(
+                description,
+                content = 'activity_descriptions',
+                content_rowid = 'id',
+                tokenize = 'unicode61 remove_diacritics 2'
+            )
+        """);
+        createDescriptionSearchTriggers(stmt);
+        stmt.execute("INSERT INTO description_search (description_search) VALUES ('rebuild')");
+    }
+
+    private static void createDescriptionSearchTriggers(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_activity_descriptions_search_insert
+            AFTER INSERT ON activity_descriptions
+            BEGIN
+                INSERT INTO description_search (rowid, description) VALUES (NEW.id, NEW.description);
+            END
+        """);
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_activity_descriptions_search_delete
+            AFTER DELETE ON activity_descriptions
+            BEGIN
+                INSERT INTO description_search (description_search, rowid, description)
+                VALUES ('delete', OLD.id, OLD.description);
+            END
+        """);
+
+        // Nur bei geändertem Text; das Hochzählen von usage_count berührt den Index nicht
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS trg_activity_descriptions_search_update
+            AFTER UPDATE OF description ON activity_descriptions
+            BEGIN
+                INSERT INTO description_search (description_search, rowid, description)
+                VALUES ('delete', OLD.id, OLD.description);
+                INSERT INTO description_search (rowid, description) VALUES (NEW.id, NEW.description);
+            END
+        """);
+    }
+
+    /**
+     * Jede Zeile in time_entries und consolidated_entries bekommt eine uuid, die auf allen Geräten gleich ist
+     * (die id ist pro Datei vergeben). Trigger schreiben jede Änderung mit fortlaufender seq in change_log;
+     * DatabaseSync tauscht darüber nur die Änderungen seit dem letzten Abgleich aus.
+     * Bestehende Zeilen erhalten eine aus created_at und id abgeleitete uuid, damit zwei Kopien derselben
+     * Datei beim ersten Abgleich keine doppelten Einträge erzeugen.
+     */
+    private static void createChangeLog(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS sync_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                database_id TEXT NOT NULL,
+                capture_paused INTEGER NOT NULL DEFAULT 0
+            )
+        """);
+        stmt.execute("""
+            INSERT OR IGNORE INTO sync_state (id, database_id) VALUES (1, lower(hex(randomblob(16))))
+        """);
+
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS change_log (
+                seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                table_name TEXT NOT NULL,
+                entry_uuid TEXT NOT NULL,
+                operation TEXT NOT NULL CHECK (operation IN ('upsert', 'delete')),
+                modified_at TEXT NOT NULL,
+                origin TEXT NOT NULL
+            )
+        """);
+        // Letzte Änderung pro Eintrag für den Vergleich last-writer-wins
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_change_log_entry ON change_log(table_name, entry_uuid, seq)");
+
+        // Bis wohin die Änderungen der anderen Datenbank bereits übernommen sind
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS sync_peers (
+                peer_id TEXT PRIMARY KEY,
+                received_seq INTEGER NOT NULL DEFAULT 0,
+                last_sync TEXT
+            )
+        """);
+
+        stmt.execute("DROP TABLE IF EXISTS time_entries_new");
+        stmt.execute("""
+            CREATE TABLE time_entries_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER,
+                description_id INTEGER NOT NULL REFERENCES activity_descriptions(id),
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                uuid TEXT NOT NULL UNIQUE DEFAULT (lower(hex(randomblob(16))))
+            )
+        """);
+        stmt.execute("""
+            INSERT INTO time_entries_new (id, date, start_time, end_time, description_id, is_break, created_at, uuid)
+            SELECT id, date, start_time, end_time, description_id, is_break, created_at, %s
+            FROM time_entries
+        """.formatted(legacyUuidSql()));
+        replaceTable(stmt, "time_entries");
+
+        stmt.execute("DROP TABLE IF EXISTS consolidated_entries_new");
+        stmt.execute("""
+            CREATE TABLE consolidated_entries_new (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER NOT NULL,
+                description TEXT NOT NULL,
+                duration_minutes INTEGER NOT NULL,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                uuid TEXT NOT NULL UNIQUE DEFAULT (lower(hex(randomblob(16))))
+            )
+        """);
+        stmt.execute("""
+            INSERT INTO consolidated_entries_new (id, date, start_time, end_time, description, duration_minutes, created_at, uuid)
+            SELECT id, date, start_time, end_time, description, duration_minutes, created_at, %s
+            FROM consolidated_entries
+        """.formatted(legacyUuidSql()));
+        replaceTable(stmt, "consolidated_entries");
+
+        // Indizes und Trigger hingen an den alten Tabellen
+        createLookupIndexes(stmt);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_time_entries_description ON time_entries(description_id)");
+        createDailySummaryTriggers(stmt);
+        createChangeLogTriggers(stmt);
+
+        // Vorhandene Einträge als Ausgangsstand protokollieren, damit der erste Abgleich sie überträgt
+        for (String table : SYNCED_TABLES) {
+            stmt.execute("""
+                INSERT INTO change_log (table_name, entry_uuid, operation, modified_at, origin)
+                SELECT '%1$s', uuid, 'upsert', strftime('%%Y-%%m-%%dT%%H:%%M:%%fZ', COALESCE(created_at, '1970-01-01')),
+                       (SELECT database_id FROM sync_state)
+                FROM %1$s ORDER BY id
+            """.formatted(table));
+        }
+    }
+
+    /**
+     * Trigger für change_log. Sie schweigen, solange sync_state.capture_paused gesetzt ist: beim Übernehmen
+     * fremder Änderungen (DatabaseSync protokolliert dann selbst) und beim Archivieren.
+     * Wie die Tagessummen-Trigger nach jedem Neuaufbau der Tabellen erneut anzulegen.
+     */
+    static void createChangeLogTriggers(Statement stmt) throws SQLException {
+        for (String table : SYNCED_TABLES) {
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS trg_%1$s_log_insert
+                AFTER INSERT ON %1$s
+                WHEN NOT (SELECT capture_paused FROM sync_state)
+                BEGIN
+                    %2$s
+                END
+            """.formatted(table, logChangeSql(table, "NEW", "upsert")));
+
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS trg_%1$s_log_update
+                AFTER UPDATE ON %1$s
+                WHEN NOT (SELECT capture_paused FROM sync_state)
+                BEGIN
+                    %2$s
+                END
+            """.formatted(table, logChangeSql(table, "NEW", "upsert")));
+
+            stmt.execute("""
+                CREATE TRIGGER IF NOT EXISTS trg_%1$s_log_delete
+                AFTER DELETE ON %1$s
+                WHEN NOT (SELECT capture_paused FROM sync_state)
+                BEGIN
+                    %2$s
+                END
+            """.formatted(table, logChangeSql(table, "OLD", "delete")));
+        }
+    }
+
+    private static String logChangeSql(String table, String row, String operation) {
+        return """
+            INSERT INTO change_log (table_name, entry_uuid, operation, modified_at, origin)
+            VALUES ('%s', %s.uuid, '%s', strftime('%%Y-%%m-%%dT%%H:%%M:%%fZ', 'now'), (SELECT database_id FROM sync_state));
+        """.formatted(table, row, operation);
+    }
+
+    // Auf jeder Kopie derselben Datei gleich
+    private static String legacyUuidSql() {
+        return "lower(hex(COALESCE(created_at, '') || '/' || id))";
+    }
+
+    /**
+     * Journal der Änderungen an time_entries (siehe MutationJournal). seq ohne AUTOINCREMENT: es wird nie
+     * gelöscht, neue Ereignisse landen also immer am Ende der Tabelle. Zeitpunkt in Unix-Sekunden,
+     * Datum und Uhrzeiten wie in time_entries (siehe ColumnCodec).
+     */
+    private static void createEntryJournal(Statement stmt) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS entry_journal (
+                seq INTEGER PRIMARY KEY,
+                recorded_at INTEGER NOT NULL DEFAULT (unixepoch()),
+                kind INTEGER NOT NULL,
+                entry_id INTEGER,
+                date INTEGER NOT NULL,
+                start_time INTEGER,
+                end_time INTEGER,
+                description_id INTEGER,
+                is_break INTEGER
+            )
+        """);
+
+        // Bis zu welcher seq die Ereignisse in time_entries übertragen sind
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS journal_state (
+                id INTEGER PRIMARY KEY CHECK (id = 1),
+                compacted_seq INTEGER NOT NULL DEFAULT 0,
+                compacted_at INTEGER
+            )
+        """);
+        stmt.execute("INSERT OR IGNORE INTO journal_state (id, compacted_seq) VALUES (1, 0)");
+    }
+
+    private static void createMaintenanceLog(Statement stmt) throws SQLException {
+        // Ein Eintrag pro Wartungsschritt; Größen als page_count * page_size in Bytes
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS maintenance_log (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                run_at INTEGER NOT NULL,
+                step TEXT NOT NULL,
+                duration_ms INTEGER NOT NULL,
+                size_before INTEGER,
+                size_after INTEGER
+            )
+        """);
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_maintenance_log_run_at ON maintenance_log(run_at)");
+    }
+
+    /**
+     * Berechnet daily_summary vollständig aus time_entries und consolidated_entries neu
+     */
+    static void rebuildDailySummary(Statement stmt) throws SQLException {
+        rebuildDailySummary(stmt, List.of(ArchivePartitions.MAIN_SCHEMA));
+    }
+
+    /**
+     * Wie {@link #rebuildDailySummary(Statement)}, zusätzlich über die Tabellen der angegebenen
+     * eingebundenen Archive (siehe ArchivePartitions)
+     */
+    static void rebuildDailySummary(Statement stmt, List<String> schemas) throws SQLException {
+        stmt.execute("DELETE FROM daily_summary");
+        for (String schema : schemas) {
+            stmt.execute("""
+                INSERT INTO daily_summary (date, work_minutes, break_minutes, entry_count)
+                SELECT date, SUM(%s), SUM(%s), COUNT(*)
+                FROM %s.time_entries AS time_entries
+                GROUP BY date
+            """.formatted(workMinutesSql("time_entries"), breakMinutesSql("time_entries"), schema));
+            // WHERE true: sonst hält der Parser ON CONFLICT für einen Teil des SELECT
+            stmt.execute("""
+                INSERT INTO daily_summary (date, closed)
+                SELECT DISTINCT date, 1 FROM %s.consolidated_entries WHERE true
+                ON CONFLICT(date) DO UPDATE SET closed = 1
+            """.formatted(schema));
+        }
+    }
+
+    /**
+     * Tabellen einer Jahres-Archivdatei mit denselben Spalten wie time_entries und consolidated_entries.
+     * IDs werden aus der Hauptdatenbank übernommen; keine Trigger, daily_summary und das Verzeichnis
+     * activity_descriptions bleiben in main. Vorhandene Archive älterer Schema-Versionen werden angepasst,
+     * in einer Transaktion aufzurufen.
+     */
+    static void createArchiveTables(Statement stmt, String schema) throws SQLException {
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS %s.time_entries (
+                id INTEGER PRIMARY KEY,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER,
+                description_id INTEGER NOT NULL,
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                uuid TEXT
+            )
+        """.formatted(schema));
+        stmt.execute("""
+            CREATE TABLE IF NOT EXISTS %s.consolidated_entries (
+                id INTEGER PRIMARY KEY,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER NOT NULL,
+                description TEXT NOT NULL,
+                duration_minutes INTEGER NOT NULL,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                uuid TEXT
+            )
+        """.formatted(schema));
+        // Archive aus Schema-Version 7 haben noch keine uuid-Spalte
+        for (String table : SYNCED_TABLES) {
+            if (!hasColumn(stmt, schema, table, "uuid")) {
+                stmt.execute("ALTER TABLE " + schema + "." + table + " ADD COLUMN uuid TEXT");
+            }
+        }
+        // Archive vor Schema-Version 6 speichern den Beschreibungstext selbst
+        if (hasColumn(stmt, schema, "time_entries", "description")) {
+            referenceArchiveDescriptionsById(stmt, schema);
+        }
+        stmt.execute("CREATE INDEX IF NOT EXISTS " + schema + ".idx_time_entries_date_start ON time_entries(date, start_time)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS " + schema + ".idx_consolidated_entries_date ON consolidated_entries(date, start_time)");
+    }
+
+    /**
+     * Wie Migration 6 für eine Archivdatei: fehlende Beschreibungen kommen in das Verzeichnis in main,
+     * time_entries wird mit description_id statt description neu aufgebaut. Die Spaltenreihenfolge muss
+     * der von main.time_entries entsprechen, weil archiveYear mit SELECT * kopiert.
+     */
+    private static void referenceArchiveDescriptionsById(Statement stmt, String schema) throws SQLException {
+        stmt.execute("""
+            INSERT INTO main.activity_descriptions (description, usage_count, last_used)
+            SELECT DISTINCT TRIM(description), 0, strftime('%%Y-%%m-%%dT%%H:%%M:%%S', 'now', 'localtime')
+            FROM %s.time_entries WHERE true
+            ON CONFLICT(description) DO NOTHING
+        """.formatted(schema));
+
+        stmt.execute("DROP TABLE IF EXISTS " + schema + ".time_entries_new");
+        stmt.execute("""
+            CREATE TABLE %s.time_entries_new (
+                id INTEGER PRIMARY KEY,
+                date INTEGER NOT NULL,
+                start_time INTEGER NOT NULL,
+                end_time INTEGER,
+                description_id INTEGER NOT NULL,
+                is_break BOOLEAN DEFAULT 0,
+                created_at TEXT DEFAULT CURRENT_TIMESTAMP,
+                uuid TEXT
+            )
+        """.formatted(schema));
+        // Exakter Vergleich wie in Migration 6
+        stmt.execute("""
+            INSERT INTO %1$s.time_entries_new (id, date, start_time, end_time, description_id, is_break, created_at, uuid)
+            SELECT t.id, t.date, t.start_time, t.end_time, d.id, t.is_break, t.created_at, t.uuid
+            FROM %1$s.time_entries t
+            JOIN main.activity_descriptions d ON d.description = TRIM(t.description)
+        """.formatted(schema));
+        stmt.execute("DROP TABLE " + schema + ".time_entries");
+        stmt.execute("ALTER TABLE " + schema + ".time_entries_new RENAME TO time_entries");
+        System.out.println("Archiv " + schema + " auf Beschreibungs-IDs umgestellt");
+    }
+
+    private static boolean hasColumn(Statement stmt, String schema, String table, String column) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA " + schema + ".table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals(column)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static String addToSummarySql(String row) {
+        return """
+            INSERT INTO daily_summary (date, work_minutes, break_minutes, entry_count)
+            VALUES (%1$s.date, %2$s, %3$s, 1)
+            ON CONFLICT(date) DO UPDATE SET
+                work_minutes = work_minutes + excluded.work_minutes,
+                break_minutes = break_minutes + excluded.break_minutes,
+                entry_count = entry_count + 1;
+        """.formatted(row, workMinutesSql(row), breakMinutesSql(row));
+    }
+
+    private static String removeFromSummarySql(String row) {
+        return """
+            UPDATE daily_summary SET
+                work_minutes = work_minutes - %2$s,
+                break_minutes = break_minutes - %3$s,
+                entry_count = entry_count - 1
+            WHERE date = %1$s.date;
+            DELETE FROM daily_summary WHERE date = %1$s.date AND entry_count <= 0 AND closed = 0;
+        """.formatted(row, workMinutesSql(row), breakMinutesSql(row));
+    }
+
+    // Volle Minuten wie TimeEntry.getDurationMinutes(), laufende Einträge zählen nicht
+    private static String workMinutesSql(String row) {
+        return "(CASE WHEN %1$s.end_time IS NOT NULL AND NOT %1$s.is_break THEN (%1$s.end_time - %1$s.start_time) / 60 ELSE 0 END)"
+                .formatted(row);
+    }
+
+    private static String breakMinutesSql(String row) {
+        return "(CASE WHEN %1$s.end_time IS NOT NULL AND %1$s.is_break THEN (%1$s.end_time - %1$s.start_time) / 60 ELSE 0 END)"
+                .formatted(row);
+    }
+
+    private static String epochDaySql(String column) {
+        return "CAST(julianday(" + column + ") - julianday('1970-01-01') AS INTEGER)";
+    }
+
+    private static String secondOfDaySql(String column) {
+        return "CAST(strftime('%s', " + column + ") AS INTEGER) % 86400";
+    }
+
+    /**
+     * Ersetzt table durch table_new und übernimmt den AUTOINCREMENT-Zähler,
+     * damit IDs gelöschter Einträge nicht erneut vergeben werden
+     */
+    private static void replaceTable(Statement stmt, String table) throws SQLException {
+        stmt.execute("DELETE FROM sqlite_sequence WHERE name = '" + table + "_new'");
+        stmt.execute("INSERT INTO sqlite_sequence (name, seq) SELECT '" + table + "_new', seq " +
+                "FROM sqlite_sequence WHERE name = '" + table + "'");
+        stmt.execute("DROP TABLE " + table);
+        stmt.execute("ALTER TABLE " + table + "_new RENAME TO " + table);
+    }
+}
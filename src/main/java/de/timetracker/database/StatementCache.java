@@ -0,0 +1,129 @@
+package de.timetracker.database;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache kompilierter PreparedStatements für eine physische Verbindung, Schlüssel ist der SQL-Text.
+ * close() auf einem ausgegebenen Statement setzt nur die Parameter zurück und gibt es an den Cache zurück.
+ */
+final class StatementCache {
+    private static final int MAX_STATEMENTS = 64;
+
+    private final Connection physical;
+    private final LinkedHashMap<String, CachedStatement> statements =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long hits = 0;
+    private long misses = 0;
+
+    StatementCache(Connection physical) {
+        this.physical = physical;
+    }
+
+    /**
+     * Liefert ein vorbereitetes Statement; ist das gecachte gerade in Benutzung
+     * (verschachtelte Aufrufe), wird ein ungecachtes Statement erzeugt.
+     */
+    synchronized PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == java.sql.Statement.RETURN_GENERATED_KEYS ? "#keys#" + sql : sql;
+        CachedStatement cached = statements.get(key);
+
+        if (cached != null) {
+            if (cached.inUse) {
+                return physical.prepareStatement(sql, autoGeneratedKeys);
+            }
+            hits++;
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        misses++;
+        PreparedStatement statement = physical.prepareStatement(sql, autoGeneratedKeys);
+        cached = new CachedStatement(statement);
+        cached.inUse = true;
+        statements.put(key, cached);
+        evictIfNeeded();
+        return cached.proxy;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, CachedStatement>> it = statements.entrySet().iterator();
+        while (statements.size() > MAX_STATEMENTS && it.hasNext()) {
+            CachedStatement eldest = it.next().getValue();
+            if (!eldest.inUse) {
+                closeQuietly(eldest.statement);
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void release(CachedStatement cached) {
+        cached.inUse = false;
+    }
+
+    synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Schließen eines gecachten Statements: " + e.getMessage());
+        }
+    }
+
+    private final class CachedStatement {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse = false;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (p, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (inUse) {
+                                    statement.clearParameters();
+                                    statement.clearBatch();
+                                    release(this);
+                                }
+                                return null;
+                            case "isClosed":
+                                return !inUse || statement.isClosed();
+                            case "equals":
+                                return p == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(p);
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
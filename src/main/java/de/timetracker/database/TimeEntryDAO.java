@@ -2,133 +2,541 @@ package de.timetracker.database;
 
 import de.timetracker.model.ActivityDescription;
 import de.timetracker.model.ConsolidatedEntry;
+import de.timetracker.model.DayStatistics;
 import de.timetracker.model.TimeEntry;
 
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.LocalTime;
 import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class TimeEntryDAO {
+    // RETURNING liefert die ID mit dem INSERT selbst, ohne zweites SELECT last_insert_rowid()
+    private static final String INSERT_TIME_ENTRY_SQL =
+            "INSERT INTO time_entries (date, start_time, end_time, description_id, is_break) VALUES (?, ?, ?, ?, ?) RETURNING id";
+    private static final String INSERT_TIME_ENTRY_WITH_ID_SQL =
+            "INSERT INTO time_entries (date, start_time, end_time, description_id, is_break, id) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_TIME_ENTRY_SQL =
+            "UPDATE time_entries SET date=?, start_time=?, end_time=?, description_id=?, is_break=? WHERE id=?";
+    private static final String DELETE_TIME_ENTRY_SQL = "DELETE FROM time_entries WHERE id=?";
+    // Ein Statement statt SELECT + INSERT/UPDATE; Eindeutigkeit über die exakte Schreibweise (seit Migration 6).
+    // RETURNING liefert die ID für time_entries.description_id
+    private static final String UPSERT_ACTIVITY_DESCRIPTION_SQL =
+            "INSERT INTO activity_descriptions (description, usage_count, last_used) VALUES (?, ?, ?) " +
+            "ON CONFLICT(description) DO UPDATE SET usage_count = usage_count + excluded.usage_count, " +
+            "last_used = excluded.last_used RETURNING *";
+    private static final String DAY_STATISTICS_COLUMNS =
+            "date, entry_count, work_minutes, break_minutes, closed";
+    // %s ist das Schema der Partition (siehe partitionedSelect); der Beschreibungstext kommt immer
+    // aus dem Verzeichnis in main. Explizite Spalten, damit UNION ALL dieselbe Reihenfolge liefert.
+    private static final String SELECT_TIME_ENTRIES =
+            "SELECT t.id, t.date, t.start_time, t.end_time, t.description_id, d.description, t.is_break " +
+            "FROM %s.time_entries t JOIN main.activity_descriptions d ON d.id = t.description_id";
+    private static final String SELECT_CONSOLIDATED_ENTRIES =
+            "SELECT id, date, start_time, end_time, description, duration_minutes FROM %s.consolidated_entries";
+    private static final String INSERT_CONSOLIDATED_ENTRY_SQL =
+            "INSERT INTO consolidated_entries (date, start_time, end_time, description, duration_minutes) VALUES (?, ?, ?, ?, ?) RETURNING id";
+
+    // Einträge pro Block, wenn Lesezugriffe die Schreibverbindung belegen (siehe forEachTimeEntry)
+    private static final int STREAM_CHUNK_SIZE = 1000;
+
     private final DatabaseManager dbManager;
+    private final DayCache dayCache;
+    private final MutationJournal journal;
 
     public TimeEntryDAO() {
-        this.dbManager = DatabaseManager.getInstance();
+        this(DatabaseManager.getInstance());
+    }
+
+    /**
+     * DAO auf einer eigenen Datenbank, z.B. einer In-Memory-Instanz für Tests und Messungen
+     */
+    public TimeEntryDAO(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+        this.dayCache = dbManager.getDayCache();
+        this.journal = dbManager.getJournal();
+    }
+
+    /**
+     * Führt mehrere DAO-Aufrufe atomar mit einem einzigen Commit aus.
+     * Schlägt ein DAO-Aufruf innerhalb fehl, wird die gesamte Einheit zurückgerollt,
+     * sofern der Fehler nicht per {@link Transaction#rollbackTo} auf einen Savepoint begrenzt wurde.
+     * Verschachtelte Aufrufe laufen als Savepoint in der äußeren Transaktion.
+     *
+     * @return true wenn die Änderungen übernommen wurden
+     */
+    public boolean inTransaction(TransactionCallback callback) {
+        Transaction outer = dbManager.currentTransaction();
+        if (outer != null) {
+            return inNestedTransaction(outer, callback);
+        }
+
+        try (Transaction tx = dbManager.beginTransaction()) {
+            callback.execute(tx);
+            if (tx.isRollbackOnly()) {
+                tx.rollback();
+                System.err.println("Transaktion zurückgerollt: mindestens ein Datenbankzugriff ist fehlgeschlagen");
+                return false;
+            }
+            tx.commit();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Fehler in der Transaktion: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private boolean inNestedTransaction(Transaction outer, TransactionCallback callback) {
+        Savepoint savepoint = null;
+        try {
+            savepoint = outer.savepoint("nested");
+            callback.execute(outer);
+            if (outer.isRollbackOnly()) {
+                outer.rollbackTo(savepoint);
+                return false;
+            }
+            outer.release(savepoint);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Fehler in der verschachtelten Transaktion: " + e.getMessage());
+            try {
+                if (savepoint != null) {
+                    outer.rollbackTo(savepoint);
+                } else {
+                    outer.setRollbackOnly();
+                }
+            } catch (SQLException rollbackError) {
+                outer.setRollbackOnly();
+            }
+        }
+        return false;
     }
 
     // TimeEntry CRUD Operationen
     public boolean insertTimeEntry(TimeEntry entry) {
-        String sql = "INSERT INTO time_entries (date, start_time, end_time, description, is_break) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = dbManager.getConnection()) {
+            runInTransaction(conn, () -> {
+                // Beschreibung im Verzeichnis anlegen bzw. Verwendung für Autocomplete zählen
+                internDescriptions(conn, List.of(entry));
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                if (journal.isEnabled()) {
+                    appendInserted(conn, List.of(entry));
+                    return;
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TIME_ENTRY_SQL)) {
+                    bindTimeEntry(pstmt, entry);
+                    entry.setId(executeInsertReturningId(pstmt));
+                }
+            });
+            afterCommit(() -> dayCache.inserted(entry));
+            return true;
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Einfügen des TimeEntry: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
 
-            pstmt.setString(1, entry.getDate().toString());
-            pstmt.setString(2, entry.getStartTime().toString());
-            pstmt.setString(3, entry.getEndTime() != null ? entry.getEndTime().toString() : null);
-            pstmt.setString(4, entry.getDescription());
-            pstmt.setBoolean(5, entry.isBreak());
+    public boolean updateTimeEntry(TimeEntry entry) {
+        if (isArchived(List.of(entry))) return false;
 
-            int affectedRows = pstmt.executeUpdate();
+        try (Connection conn = dbManager.getConnection()) {
+            int[] affectedRows = {0};
+            runInTransaction(conn, () -> {
+                internDescriptions(conn, List.of(entry));
 
-            if (affectedRows > 0) {
-                // SQLite-kompatible ID-Abfrage
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                    if (rs.next()) {
-                        entry.setId(rs.getInt(1));
-                    }
+                if (journal.isEnabled()) {
+                    affectedRows[0] = appendUpdated(conn, List.of(entry));
+                    return;
                 }
+                try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_TIME_ENTRY_SQL)) {
+                    bindTimeEntry(pstmt, entry);
+                    pstmt.setInt(6, entry.getId());
+                    affectedRows[0] = pstmt.executeUpdate();
+                }
+            });
 
-                // Aktivitätsbeschreibung für Autocomplete speichern
-                saveOrUpdateActivityDescription(entry.getDescription());
-
+            if (affectedRows[0] > 0) {
+                afterCommit(() -> dayCache.updated(List.of(entry)));
                 return true;
             }
         } catch (SQLException e) {
-            System.err.println("Fehler beim Einfügen des TimeEntry: " + e.getMessage());
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Aktualisieren des TimeEntry: " + e.getMessage());
             e.printStackTrace();
         }
         return false;
     }
 
-    public boolean updateTimeEntry(TimeEntry entry) {
-        String sql = "UPDATE time_entries SET date=?, start_time=?, end_time=?, description=?, is_break=? WHERE id=?";
+    /**
+     * Fügt mehrere TimeEntries in einer Transaktion ein und setzt die generierten IDs.
+     * Das Statement wird einmal vorbereitet; jede Zeile liefert ihre ID per RETURNING.
+     */
+    public boolean insertTimeEntries(List<TimeEntry> entries) {
+        if (entries == null || entries.isEmpty()) return true;
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection()) {
+            runInTransaction(conn, () -> {
+                internDescriptions(conn, entries);
 
-            pstmt.setString(1, entry.getDate().toString());
-            pstmt.setString(2, entry.getStartTime().toString());
-            pstmt.setString(3, entry.getEndTime() != null ? entry.getEndTime().toString() : null);
-            pstmt.setString(4, entry.getDescription());
-            pstmt.setBoolean(5, entry.isBreak());
-            pstmt.setInt(6, entry.getId());
+                if (journal.isEnabled()) {
+                    appendInserted(conn, entries);
+                    return;
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TIME_ENTRY_SQL)) {
+                    for (TimeEntry entry : entries) {
+                        bindTimeEntry(pstmt, entry);
+                        entry.setId(executeInsertReturningId(pstmt));
+                    }
+                }
+            });
+            afterCommit(() -> dayCache.inserted(entries));
+            return true;
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Einfügen von " + entries.size() + " TimeEntries: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
 
-            int affectedRows = pstmt.executeUpdate();
+    /**
+     * Fügt TimeEntries mit vorgegebenen IDs firstId, firstId+1, ... ein (Massenimport).
+     * Ist eine ID des Bereichs bereits vergeben, wird nichts eingefügt.
+     * Einen freien Bereich liefert {@link #nextTimeEntryId()} innerhalb derselben Transaktion.
+     * Auch im Journal-Modus direkt in time_entries, als ein Batch statt als einzelne Ereignisse.
+     */
+    public boolean insertTimeEntries(List<TimeEntry> entries, int firstId) {
+        if (entries == null || entries.isEmpty()) return true;
+        if (firstId <= 0) {
+            System.err.println("Ungültige Start-ID für den Import: " + firstId);
+            return false;
+        }
+
+        try (Connection conn = dbManager.getConnection()) {
+            runInTransaction(conn, () -> {
+                internDescriptions(conn, entries);
+
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TIME_ENTRY_WITH_ID_SQL)) {
+                    for (int i = 0; i < entries.size(); i++) {
+                        bindTimeEntry(pstmt, entries.get(i));
+                        pstmt.setInt(6, firstId + i);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
 
-            if (affectedRows > 0) {
-                saveOrUpdateActivityDescription(entry.getDescription());
+                for (int i = 0; i < entries.size(); i++) {
+                    entries.get(i).setId(firstId + i);
+                }
+            });
+            afterCommit(() -> dayCache.inserted(entries));
+            return true;
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Import von " + entries.size() + " TimeEntries ab ID " + firstId + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Einträge archivierter Jahre sind schreibgeschützt; abgelehnt wird vor dem ersten Schreibzugriff,
+     * damit auch das Beschreibungsverzeichnis unverändert bleibt. Die Oberfläche lässt solche Einträge
+     * gar nicht erst bearbeiten (EditableTable.setArchivedYears).
+     */
+    private boolean isArchived(List<TimeEntry> entries) {
+        Set<Integer> archivedYears = dbManager.getArchivedYears();
+        if (archivedYears.isEmpty()) return false;
+
+        for (TimeEntry entry : entries) {
+            if (archivedYears.contains(entry.getDate().getYear())) {
+                System.err.println("TimeEntry " + entry.getId() + " liegt im archivierten Jahr "
+                        + entry.getDate().getYear() + " und ist schreibgeschützt");
                 return true;
             }
+        }
+        return false;
+    }
+
+    /**
+     * Erste ID, die AUTOINCREMENT als nächstes vergeben würde, auch über IDs noch nicht verdichteter
+     * Journal-Ereignisse hinweg. Bleibt nur innerhalb einer laufenden Transaktion ({@link #inTransaction}) stabil.
+     */
+    public int nextTimeEntryId() {
+        try (Connection conn = dbManager.getReadConnection()) {
+            return journal.nextEntryId(conn);
         } catch (SQLException e) {
-            System.err.println("Fehler beim Aktualisieren des TimeEntry: " + e.getMessage());
+            System.err.println("Fehler beim Ermitteln der nächsten TimeEntry-ID: " + e.getMessage());
             e.printStackTrace();
         }
-        return false;
+        return -1;
     }
 
-    public boolean deleteTimeEntry(int id) {
-        String sql = "DELETE FROM time_entries WHERE id=?";
+    /**
+     * Aktualisiert mehrere TimeEntries per JDBC-Batch in einer Transaktion
+     */
+    public boolean updateTimeEntries(List<TimeEntry> entries) {
+        if (entries == null || entries.isEmpty()) return true;
+        if (isArchived(entries)) return false;
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbManager.getConnection()) {
+            boolean[] allUpdated = {true};
+            runInTransaction(conn, () -> {
+                internDescriptions(conn, entries);
 
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+                if (journal.isEnabled()) {
+                    allUpdated[0] = appendUpdated(conn, entries) == entries.size();
+                    return;
+                }
+                try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_TIME_ENTRY_SQL)) {
+                    for (TimeEntry entry : entries) {
+                        bindTimeEntry(pstmt, entry);
+                        pstmt.setInt(6, entry.getId());
+                        pstmt.addBatch();
+                    }
+                    for (int count : pstmt.executeBatch()) {
+                        if (count == 0) allUpdated[0] = false;
+                    }
+                }
+            });
+            if (allUpdated[0]) {
+                afterCommit(() -> dayCache.updated(entries));
+            } else {
+                // Nicht mehr vorhandene Einträge: welcher Tag betroffen ist, ist unklar
+                afterCommit(dayCache::invalidateAll);
+            }
+            return allUpdated[0];
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Aktualisieren von " + entries.size() + " TimeEntries: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public boolean deleteTimeEntry(int id) {
+        try (Connection conn = dbManager.getConnection()) {
+            boolean[] deleted = {false};
+            if (journal.isEnabled()) {
+                runInTransaction(conn, () -> deleted[0] = appendDeleted(conn, id));
+            } else {
+                try (PreparedStatement pstmt = conn.prepareStatement(DELETE_TIME_ENTRY_SQL)) {
+                    pstmt.setInt(1, id);
+                    deleted[0] = pstmt.executeUpdate() > 0;
+                }
+            }
+            if (deleted[0]) {
+                afterCommit(() -> dayCache.deleted(id));
+                return true;
+            }
 
         } catch (SQLException e) {
+            dbManager.markRollbackOnly();
             System.err.println("Fehler beim Löschen des TimeEntry: " + e.getMessage());
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Einträge eines Tages; wiederholte Abfragen werden aus dem gemeinsamen Tages-Cache bedient.
+     * Innerhalb einer Transaktion wird der Cache umgangen: er kennt deren Änderungen erst nach dem Commit.
+     * Im Journal-Modus ergibt sich der Tag aus dem Schnappschuss in time_entries und den offenen Ereignissen.
+     */
     public List<TimeEntry> getTimeEntriesByDate(LocalDate date) {
-        String sql = "SELECT * FROM time_entries WHERE date=? ORDER BY start_time";
+        boolean useCache = dbManager.currentTransaction() == null;
+        List<TimeEntry> cached = useCache ? dayCache.get(date) : null;
+        if (cached != null) {
+            return cached;
+        }
+
         List<TimeEntry> entries = new ArrayList<>();
+        long cacheVersion = dayCache.version();
+
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<String> schemas = dbManager.attachPartitions(conn, date, date);
+            String sql = partitionedSelect(schemas, SELECT_TIME_ENTRIES, "date=?", "start_time");
+
+            if (journal.isEnabled()) {
+                // Schnappschuss und Ereignisse aus demselben Stand, auch wenn parallel verdichtet wird
+                runInTransaction(conn, () -> {
+                    readTimeEntriesByDate(conn, sql, schemas.size(), date, entries);
+                    replayJournal(conn, entries, entry -> entry.getDate().equals(date));
+                });
+            } else {
+                readTimeEntriesByDate(conn, sql, schemas.size(), date, entries);
+            }
+            if (useCache) {
+                dayCache.put(date, entries, cacheVersion);
+            }
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der TimeEntries: " + e.getMessage());
+            e.printStackTrace();
+        }
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        return entries;
+    }
 
-            pstmt.setString(1, date.toString());
+    private void readTimeEntriesByDate(Connection conn, String sql, int partitions, LocalDate date,
+                                       List<TimeEntry> entries) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < partitions; i++) {
+                ColumnCodec.bindDate(pstmt, i + 1, date);
+            }
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
-                    TimeEntry entry = mapResultSetToTimeEntry(rs);
-                    entries.add(entry);
+                    entries.add(mapResultSetToTimeEntry(rs));
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Laden der TimeEntries: " + e.getMessage());
-            e.printStackTrace();
         }
+    }
 
+    /**
+     * Lädt alle TimeEntries von from bis einschließlich to, sortiert nach Datum und Startzeit
+     */
+    public List<TimeEntry> getTimeEntriesBetween(LocalDate from, LocalDate to) {
+        List<TimeEntry> entries = new ArrayList<>();
+        forEachTimeEntry(from, to, entries::add);
         return entries;
     }
 
-    public TimeEntry getActiveTimeEntry() {
-        String sql = "SELECT * FROM time_entries WHERE end_time IS NULL ORDER BY start_time DESC LIMIT 1";
+    /**
+     * Liest alle TimeEntries von from bis einschließlich to zeilenweise und reicht sie an den Consumer
+     * weiter, ohne eine Liste aufzubauen. Der Consumer läuft, während die Leseverbindung gehalten wird,
+     * und sollte deshalb kurz sein. Ohne Lese-Pool (In-Memory) wird blockweise gelesen.
+     * Im Journal-Modus werden die Einträge mit offenen Ereignissen in ihrem letzten Stand eingereiht.
+     *
+     * @return false wenn das Lesen abgebrochen werden musste
+     */
+    public boolean forEachTimeEntry(LocalDate from, LocalDate to, Consumer<TimeEntry> consumer) {
+        if (dbManager.readsBlockWriters()) {
+            return forEachTimeEntryInChunks(from, to, consumer);
+        }
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<String> schemas = dbManager.attachPartitions(conn, from, to);
+            // Spaltennummern aus SELECT_TIME_ENTRIES wie in forEachTimeEntryInChunks
+            String sql = partitionedSelect(schemas, SELECT_TIME_ENTRIES, "date BETWEEN ? AND ?", "2, 3, 1");
+
+            readConsistently(conn, () -> {
+                PendingMerge merge = pendingMerge(conn, from, to, consumer);
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    bindDateRange(pstmt, schemas.size(), from, to);
 
-            if (rs.next()) {
-                return mapResultSetToTimeEntry(rs);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            merge.accept(mapResultSetToTimeEntry(rs));
+                        }
+                    }
+                }
+                merge.finish();
+            });
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der TimeEntries von " + from + " bis " + to + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Wie {@link #forEachTimeEntry}, aber in Blöcken zu {@value #STREAM_CHUNK_SIZE} Einträgen, fortgesetzt hinter
+     * dem letzten gelesenen Eintrag. Die Verbindung wird zwischen den Blöcken freigegeben und der Consumer
+     * läuft ohne sie, damit ein langer Export Schreibzugriffe nicht bis zum Ende aufhält.
+     */
+    private boolean forEachTimeEntryInChunks(LocalDate from, LocalDate to, Consumer<TimeEntry> consumer) {
+        // Stand der offenen Ereignisse zu Beginn; ihre Zeilen werden auch nach einer Verdichtung übergangen
+        PendingMerge merge;
+        try (Connection conn = dbManager.getReadConnection()) {
+            merge = pendingMerge(conn, from, to, consumer);
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der TimeEntries von " + from + " bis " + to + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+
+        long lastDate = ColumnCodec.encodeDate(from);
+        int lastStartTime = -1;
+        int lastId = 0;
+
+        while (true) {
+            List<TimeEntry> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            try (Connection conn = dbManager.getReadConnection()) {
+                List<String> schemas = dbManager.attachPartitions(conn, from, to);
+                String sql = partitionedSelect(schemas, SELECT_TIME_ENTRIES,
+                        "t.date BETWEEN ? AND ? AND (t.date, t.start_time, t.id) > (?, ?, ?)",
+                        // Spaltennummern aus SELECT_TIME_ENTRIES (date, start_time, id); "id" wäre im Join mehrdeutig
+                        "2, 3, 1") + " LIMIT " + STREAM_CHUNK_SIZE;
+
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < schemas.size(); i++) {
+                        ColumnCodec.bindDate(pstmt, 5 * i + 1, from);
+                        ColumnCodec.bindDate(pstmt, 5 * i + 2, to);
+                        pstmt.setLong(5 * i + 3, lastDate);
+                        pstmt.setInt(5 * i + 4, lastStartTime);
+                        pstmt.setInt(5 * i + 5, lastId);
+                    }
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            chunk.add(mapResultSetToTimeEntry(rs));
+                            lastDate = rs.getLong("date");
+                            lastStartTime = rs.getInt("start_time");
+                            lastId = rs.getInt("id");
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Fehler beim Laden der TimeEntries von " + from + " bis " + to + ": " + e.getMessage());
+                e.printStackTrace();
+                return false;
             }
+
+            chunk.forEach(merge);
+            if (chunk.size() < STREAM_CHUNK_SIZE) {
+                merge.finish();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Der laufende Eintrag mit der spätesten Startzeit oder null
+     */
+    public TimeEntry getActiveTimeEntry() {
+        String sql = SELECT_TIME_ENTRIES.formatted(ArchivePartitions.MAIN_SCHEMA) + " WHERE end_time IS NULL";
+
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<TimeEntry> running = new ArrayList<>();
+            readConsistently(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql);
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        running.add(mapResultSetToTimeEntry(rs));
+                    }
+                }
+                if (journal.isEnabled()) {
+                    replayJournal(conn, running, entry -> entry.getEndTime() == null);
+                }
+            });
+            return running.stream().max(Comparator.comparing(TimeEntry::getStartTime)).orElse(null);
         } catch (SQLException e) {
             System.err.println("Fehler beim Laden des aktiven TimeEntry: " + e.getMessage());
             e.printStackTrace();
@@ -137,51 +545,187 @@ public class TimeEntryDAO {
         return null;
     }
 
-    // ConsolidatedEntry CRUD Operationen
-    public boolean insertConsolidatedEntry(ConsolidatedEntry entry) {
-        String sql = "INSERT INTO consolidated_entries (date, start_time, end_time, description, duration_minutes) VALUES (?, ?, ?, ?, ?)";
-
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Volltextsuche in den Beschreibungen aller Einträge von from bis einschließlich to, auch in Archiven.
+     * Jedes Wort der Eingabe wird als Wortanfang gesucht, alle Wörter müssen vorkommen.
+     * Sortiert nach Relevanz (bm25) und innerhalb gleicher Beschreibung die neuesten Einträge zuerst.
+     * Im Journal-Modus zählt der letzte Stand der Einträge mit offenen Ereignissen.
+     */
+    public List<TimeEntry> searchEntries(String query, LocalDate from, LocalDate to, int limit) {
+        List<TimeEntry> entries = new ArrayList<>();
+        String ftsQuery = toFtsQuery(query);
+        if (ftsQuery.isEmpty() || limit <= 0) return entries;
 
-            pstmt.setString(1, entry.getDate().toString());
-            pstmt.setString(2, entry.getStartTime().toString());
-            pstmt.setString(3, entry.getEndTime().toString());
-            pstmt.setString(4, entry.getDescription());
-            pstmt.setInt(5, entry.getDurationMinutes());
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<String> schemas = dbManager.attachPartitions(conn, from, to);
 
-            int affectedRows = pstmt.executeUpdate();
+            // Gesucht wird nur im kleinen Verzeichnis, die Einträge kommen über den Index auf description_id
+            StringJoiner partitions = new StringJoiner(" UNION ALL ");
+            for (String schema : schemas) {
+                partitions.add(SELECT_TIME_ENTRIES.formatted(schema) +
+                        " WHERE t.description_id IN (SELECT description_id FROM matches) AND date BETWEEN ? AND ?");
+            }
+            String sql = "WITH matches AS (SELECT rowid AS description_id, bm25(description_search) AS rank " +
+                    "FROM description_search WHERE description_search MATCH ?) " +
+                    "SELECT e.* FROM (" + partitions + ") e JOIN matches m ON m.description_id = e.description_id " +
+                    "ORDER BY m.rank, e.date DESC, e.start_time DESC LIMIT ?";
+
+            readConsistently(conn, () -> {
+                Map<Integer, TimeEntry> pending = journal.isEnabled() ? journal.pendingStates(conn) : Map.of();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, ftsQuery);
+                    for (int i = 0; i < schemas.size(); i++) {
+                        ColumnCodec.bindDate(pstmt, 2 * i + 2, from);
+                        ColumnCodec.bindDate(pstmt, 2 * i + 3, to);
+                    }
+                    // Reserve für Treffer, die beim Nachspielen wegfallen
+                    pstmt.setInt(2 * schemas.size() + 2, limit + pending.size());
 
-            if (affectedRows > 0) {
-                // SQLite-kompatible ID-Abfrage
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
-                    if (rs.next()) {
-                        entry.setId(rs.getInt(1));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            entries.add(mapResultSetToTimeEntry(rs));
+                        }
                     }
                 }
+                if (!pending.isEmpty()) {
+                    replaySearchResults(conn, ftsQuery, from, to, pending, entries);
+                }
+            });
+            if (entries.size() > limit) {
+                entries.subList(limit, entries.size()).clear();
+            }
+        } catch (SQLException e) {
+            System.err.println("Fehler bei der Suche nach '" + query + "': " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Ersetzt in den Suchtreffern die Einträge mit offenen Ereignissen durch ihren letzten Stand, sofern
+     * dieser noch passt, und sortiert wie die Abfrage nach Relevanz der Beschreibung, Datum und Startzeit
+     */
+    private void replaySearchResults(Connection conn, String ftsQuery, LocalDate from, LocalDate to,
+                                     Map<Integer, TimeEntry> pending, List<TimeEntry> entries) throws SQLException {
+        Map<Integer, Double> ranks = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT rowid, bm25(description_search) FROM description_search WHERE description_search MATCH ?")) {
+            pstmt.setString(1, ftsQuery);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ranks.put(rs.getInt(1), rs.getDouble(2));
+                }
+            }
+        }
+
+        Map<Integer, TimeEntry> byId = new LinkedHashMap<>();
+        for (TimeEntry entry : entries) {
+            byId.put(entry.getId(), entry);
+        }
+        pending.forEach((id, entry) -> {
+            if (entry != null && ranks.containsKey(entry.getDescriptionId())
+                    && !entry.getDate().isBefore(from) && !entry.getDate().isAfter(to)) {
+                byId.put(id, entry);
+            } else {
+                byId.remove(id);
+            }
+        });
+        entries.clear();
+        entries.addAll(byId.values());
+        entries.sort(Comparator.<TimeEntry>comparingDouble(entry -> ranks.get(entry.getDescriptionId()))
+                .thenComparing(TimeEntry::getDate, Comparator.reverseOrder())
+                .thenComparing(TimeEntry::getStartTime, Comparator.reverseOrder()));
+    }
+
+    /**
+     * Jedes Wort der Eingabe als FTS5-Präfixsuche in Anführungszeichen, damit Zeichen wie - oder *
+     * nicht als Operatoren der Abfragesprache gelten
+     */
+    private static String toFtsQuery(String input) {
+        if (input == null) return "";
+
+        StringJoiner query = new StringJoiner(" ");
+        for (String token : input.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                query.add("\"" + token + "\"*");
+            }
+        }
+        return query.toString();
+    }
+
+    // ConsolidatedEntry CRUD Operationen
+    public boolean insertConsolidatedEntry(ConsolidatedEntry entry) {
+        try (Connection conn = dbManager.getConnection()) {
+            int[] id = {0};
+            runInTransaction(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_CONSOLIDATED_ENTRY_SQL)) {
+                    bindConsolidatedEntry(pstmt, entry);
+                    id[0] = executeInsertReturningId(pstmt);
+                }
+                if (journal.isEnabled()) {
+                    journal.appendConsolidation(conn, entry.getDate());
+                }
+            });
+
+            if (id[0] > 0) {
+                entry.setId(id[0]);
                 return true;
             }
         } catch (SQLException e) {
+            dbManager.markRollbackOnly();
             System.err.println("Fehler beim Einfügen des ConsolidatedEntry: " + e.getMessage());
             e.printStackTrace();
         }
         return false;
     }
 
+    /**
+     * Fügt mehrere ConsolidatedEntries in einer Transaktion ein und setzt die generierten IDs
+     */
+    public boolean insertConsolidatedEntries(List<ConsolidatedEntry> entries) {
+        if (entries == null || entries.isEmpty()) return true;
+
+        try (Connection conn = dbManager.getConnection()) {
+            runInTransaction(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(INSERT_CONSOLIDATED_ENTRY_SQL)) {
+                    for (ConsolidatedEntry entry : entries) {
+                        bindConsolidatedEntry(pstmt, entry);
+                        entry.setId(executeInsertReturningId(pstmt));
+                    }
+                }
+                if (journal.isEnabled()) {
+                    for (LocalDate date : entries.stream().map(ConsolidatedEntry::getDate).distinct().toList()) {
+                        journal.appendConsolidation(conn, date);
+                    }
+                }
+            });
+            return true;
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Einfügen von " + entries.size() + " ConsolidatedEntries: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     public List<ConsolidatedEntry> getConsolidatedEntriesByDate(LocalDate date) {
-        String sql = "SELECT * FROM consolidated_entries WHERE date=? ORDER BY start_time";
         List<ConsolidatedEntry> entries = new ArrayList<>();
 
-        try (Connection conn = dbManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<String> schemas = dbManager.attachPartitions(conn, date, date);
+            String sql = partitionedSelect(schemas, SELECT_CONSOLIDATED_ENTRIES, "date=?", "start_time");
 
-            pstmt.setString(1, date.toString());
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < schemas.size(); i++) {
+                    ColumnCodec.bindDate(pstmt, i + 1, date);
+                }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    ConsolidatedEntry entry = mapResultSetToConsolidatedEntry(rs);
-                    entries.add(entry);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ConsolidatedEntry entry = mapResultSetToConsolidatedEntry(rs);
+                        entries.add(entry);
+                    }
                 }
             }
         } catch (SQLException e) {
@@ -192,16 +736,52 @@ public class TimeEntryDAO {
         return entries;
     }
 
+    /**
+     * Lädt alle ConsolidatedEntries von from bis einschließlich to, sortiert nach Datum und Startzeit
+     */
+    public List<ConsolidatedEntry> getConsolidatedEntriesBetween(LocalDate from, LocalDate to) {
+        List<ConsolidatedEntry> entries = new ArrayList<>();
+        forEachConsolidatedEntry(from, to, entries::add);
+        return entries;
+    }
+
+    /**
+     * Zeilenweises Gegenstück zu {@link #getConsolidatedEntriesBetween}, siehe {@link #forEachTimeEntry}
+     */
+    public boolean forEachConsolidatedEntry(LocalDate from, LocalDate to, Consumer<ConsolidatedEntry> consumer) {
+        try (Connection conn = dbManager.getReadConnection()) {
+            List<String> schemas = dbManager.attachPartitions(conn, from, to);
+            String sql = partitionedSelect(schemas, SELECT_CONSOLIDATED_ENTRIES,
+                    "date BETWEEN ? AND ?", "date, start_time");
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                bindDateRange(pstmt, schemas.size(), from, to);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapResultSetToConsolidatedEntry(rs));
+                    }
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der ConsolidatedEntries von " + from + " bis " + to + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     public boolean deleteConsolidatedEntriesByDate(LocalDate date) {
         String sql = "DELETE FROM consolidated_entries WHERE date=?";
 
         try (Connection conn = dbManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, date.toString());
+            ColumnCodec.bindDate(pstmt, 1, date);
             return pstmt.executeUpdate() >= 0; // >= 0 weil auch 0 gelöschte Einträge OK sind
 
         } catch (SQLException e) {
+            dbManager.markRollbackOnly();
             System.err.println("Fehler beim Löschen der ConsolidatedEntries: " + e.getMessage());
             e.printStackTrace();
         }
@@ -212,47 +792,103 @@ public class TimeEntryDAO {
     public void saveOrUpdateActivityDescription(String description) {
         if (description == null || description.trim().isEmpty()) return;
 
-        String selectSql = "SELECT id, usage_count FROM activity_descriptions WHERE LOWER(description) = LOWER(?)";
-        String insertSql = "INSERT INTO activity_descriptions (description, usage_count, last_used) VALUES (?, 1, ?)";
-        String updateSql = "UPDATE activity_descriptions SET usage_count = usage_count + 1, last_used = ? WHERE id = ?";
+        try (Connection conn = dbManager.getConnection()) {
+            saveOrUpdateActivityDescriptions(conn, Map.of(description.trim(), 1));
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Speichern der ActivityDescription: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Zählt mehrere Verwendungen in einem Batch hoch - ein Upsert pro eindeutiger Beschreibung
+     */
+    public void saveOrUpdateActivityDescriptions(List<String> descriptions) {
+        Map<String, Integer> usageCounts = countDescriptions(descriptions);
+        if (usageCounts.isEmpty()) return;
 
         try (Connection conn = dbManager.getConnection()) {
-            // Prüfe ob Beschreibung bereits existiert
-            try (PreparedStatement selectStmt = conn.prepareStatement(selectSql)) {
-                selectStmt.setString(1, description.trim());
-
-                try (ResultSet rs = selectStmt.executeQuery()) {
-                    if (rs.next()) {
-                        // Update existing
-                        int id = rs.getInt("id");
-                        try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                            updateStmt.setString(1, LocalDateTime.now().toString());
-                            updateStmt.setInt(2, id);
-                            updateStmt.executeUpdate();
-                        }
-                    } else {
-                        // Insert new
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setString(1, description.trim());
-                            insertStmt.setString(2, LocalDateTime.now().toString());
-                            insertStmt.executeUpdate();
-                        }
+            runInTransaction(conn, () -> saveOrUpdateActivityDescriptions(conn, usageCounts));
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Speichern von " + usageCounts.size() + " ActivityDescriptions: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ein Upsert pro Beschreibung; liefert die gespeicherten Verzeichniseinträge nach exakter Schreibweise
+     */
+    private Map<String, ActivityDescription> saveOrUpdateActivityDescriptions(Connection conn,
+                                                                             Map<String, Integer> usageCounts) throws SQLException {
+        Map<String, ActivityDescription> saved = new TreeMap<>();
+        if (usageCounts.isEmpty()) return saved;
+
+        String lastUsed = LocalDateTime.now().toString();
+        try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_ACTIVITY_DESCRIPTION_SQL)) {
+            for (Map.Entry<String, Integer> usage : usageCounts.entrySet()) {
+                pstmt.setString(1, usage.getKey());
+                pstmt.setInt(2, usage.getValue());
+                pstmt.setString(3, lastUsed);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Upsert hat keine Beschreibung zurückgegeben: " + usage.getKey());
                     }
+                    saved.put(usage.getKey(), mapResultSetToActivityDescription(rs));
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Fehler beim Speichern der ActivityDescription: " + e.getMessage());
-            e.printStackTrace();
+        }
+        return saved;
+    }
+
+    /**
+     * Legt die Beschreibungen der Einträge im Verzeichnis an, zählt ihre Verwendung für Autocomplete hoch
+     * und setzt an den Einträgen die ID ihrer Schreibweise
+     */
+    private void internDescriptions(Connection conn, List<TimeEntry> entries) throws SQLException {
+        Map<String, ActivityDescription> interned = saveOrUpdateActivityDescriptions(conn, countEntryDescriptions(entries));
+        for (TimeEntry entry : entries) {
+            ActivityDescription description = interned.get(normalizeDescription(entry.getDescription()));
+            entry.setInternedDescription(description.getId(), description.getDescription());
         }
     }
 
+    private static Map<String, Integer> countDescriptions(List<String> descriptions) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String description : descriptions) {
+            if (description == null || description.trim().isEmpty()) continue;
+            counts.merge(description.trim(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Zählt Beschreibungen nach exakter Schreibweise (wie die UNIQUE-Spalte im Verzeichnis). Auch leere
+     * Beschreibungen brauchen eine ID im Verzeichnis, zählen aber nicht als Verwendung.
+     */
+    private static Map<String, Integer> countEntryDescriptions(List<TimeEntry> entries) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (TimeEntry entry : entries) {
+            String description = normalizeDescription(entry.getDescription());
+            counts.merge(description, description.isEmpty() ? 0 : 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static String normalizeDescription(String description) {
+        return description != null ? description.trim() : "";
+    }
+
     public List<ActivityDescription> getActivityDescriptions(int limit) {
         if (limit <= 0) limit = 10; // Sicherheitscheck
 
-        String sql = "SELECT * FROM activity_descriptions ORDER BY usage_count DESC, last_used DESC LIMIT ?";
+        // Die leere Beschreibung steht nur für Einträge ohne Text im Verzeichnis
+        String sql = "SELECT * FROM activity_descriptions WHERE description <> '' " +
+                "ORDER BY usage_count DESC, last_used DESC LIMIT ?";
         List<ActivityDescription> descriptions = new ArrayList<>();
 
-        try (Connection conn = dbManager.getConnection();
+        try (Connection conn = dbManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, limit);
@@ -274,19 +910,243 @@ public class TimeEntryDAO {
         return descriptions;
     }
 
+    // Hilfsmethoden für Parameter-Bindung und Transaktionen
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Führt Arbeit in einer Transaktion aus. Läuft auf der Verbindung bereits eine
+     * Transaktion, wird diese mitbenutzt und nicht selbst committet.
+     */
+    private void runInTransaction(Connection conn, SqlWork work) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            work.run();
+            return;
+        }
+
+        conn.setAutoCommit(false);
+        try {
+            work.run();
+            conn.commit();
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Cache-Aktualisierung nach dem Commit der laufenden Transaktion; ohne Transaktion ist bereits committet
+     */
+    private void afterCommit(Runnable cacheUpdate) {
+        Transaction tx = dbManager.currentTransaction();
+        if (tx != null) {
+            tx.afterCommit(cacheUpdate);
+        } else {
+            cacheUpdate.run();
+        }
+    }
+
+    // Journal-Modus (siehe MutationJournal)
+
+    /**
+     * Vergibt fortlaufende IDs und hängt die neuen Einträge als START (laufend) bzw. ADD (nachgetragen) an
+     */
+    private void appendInserted(Connection conn, List<TimeEntry> entries) throws SQLException {
+        int nextId = journal.nextEntryId(conn);
+        for (TimeEntry entry : entries) {
+            entry.setId(nextId++);
+            journal.append(conn, entry.getEndTime() == null ? MutationJournal.Kind.START : MutationJournal.Kind.ADD, entry);
+        }
+        compactIfTailTooLong(conn);
+    }
+
+    /**
+     * Hängt den neuen Stand vorhandener Einträge als STOP bzw. EDIT an und gibt deren Anzahl zurück;
+     * nicht (mehr) vorhandene Einträge werden übergangen
+     */
+    private int appendUpdated(Connection conn, List<TimeEntry> entries) throws SQLException {
+        int updated = 0;
+        for (TimeEntry entry : entries) {
+            TimeEntry current = journal.current(conn, entry.getId());
+            if (current == null) continue;
+
+            boolean stopped = current.getEndTime() == null && entry.getEndTime() != null;
+            journal.append(conn, stopped ? MutationJournal.Kind.STOP : MutationJournal.Kind.EDIT, entry);
+            updated++;
+        }
+        compactIfTailTooLong(conn);
+        return updated;
+    }
+
+    private boolean appendDeleted(Connection conn, int id) throws SQLException {
+        TimeEntry current = journal.current(conn, id);
+        if (current == null) {
+            return false;
+        }
+        journal.appendDelete(conn, id, current.getDate());
+        compactIfTailTooLong(conn);
+        return true;
+    }
+
+    private void compactIfTailTooLong(Connection conn) throws SQLException {
+        if (journal.tailLength(conn) >= MutationJournal.MAX_TAIL) {
+            journal.compact(conn);
+        }
+    }
+
+    /**
+     * Wendet die offenen Ereignisse auf die aus time_entries gelesenen Einträge an und sortiert nach Startzeit
+     */
+    private void replayJournal(Connection conn, List<TimeEntry> entries, Predicate<TimeEntry> matches)
+            throws SQLException {
+        Map<Integer, TimeEntry> byId = new LinkedHashMap<>();
+        for (TimeEntry entry : entries) {
+            byId.put(entry.getId(), entry);
+        }
+        journal.replay(conn, byId, matches);
+        entries.clear();
+        entries.addAll(byId.values());
+        entries.sort(Comparator.comparing(TimeEntry::getStartTime));
+    }
+
+    /**
+     * Im Journal-Modus in einer Lesetransaktion, damit Schnappschuss und offene Ereignisse aus demselben
+     * Stand stammen, auch wenn parallel verdichtet wird
+     */
+    private void readConsistently(Connection conn, SqlWork work) throws SQLException {
+        if (journal.isEnabled()) {
+            runInTransaction(conn, work);
+        } else {
+            work.run();
+        }
+    }
+
+    /**
+     * Einreihung der offenen Ereignisse in einen nach Datum, Startzeit und ID sortierten Strom aus
+     * dem Schnappschuss (siehe forEachTimeEntry); ohne Journal-Modus reicht sie nur weiter
+     */
+    private PendingMerge pendingMerge(Connection conn, LocalDate from, LocalDate to, Consumer<TimeEntry> consumer)
+            throws SQLException {
+        if (!journal.isEnabled()) {
+            return new PendingMerge(Map.of(), from, to, consumer);
+        }
+        return new PendingMerge(journal.pendingStates(conn), from, to, consumer);
+    }
+
+    private static final class PendingMerge implements Consumer<TimeEntry> {
+        private static final Comparator<TimeEntry> ORDER = Comparator.comparing(TimeEntry::getDate)
+                .thenComparing(TimeEntry::getStartTime)
+                .thenComparingInt(TimeEntry::getId);
+
+        private final Set<Integer> pendingIds;
+        private final Iterator<TimeEntry> pending;
+        private final Consumer<TimeEntry> consumer;
+        private TimeEntry next;
+
+        private PendingMerge(Map<Integer, TimeEntry> states, LocalDate from, LocalDate to,
+                             Consumer<TimeEntry> consumer) {
+            this.pendingIds = states.keySet();
+            this.pending = states.values().stream()
+                    .filter(entry -> entry != null && !entry.getDate().isBefore(from) && !entry.getDate().isAfter(to))
+                    .sorted(ORDER)
+                    .iterator();
+            this.consumer = consumer;
+            this.next = pending.hasNext() ? pending.next() : null;
+        }
+
+        /**
+         * Nimmt eine Zeile aus dem Schnappschuss; überholte Zeilen von Einträgen mit offenen Ereignissen entfallen
+         */
+        @Override
+        public void accept(TimeEntry row) {
+            while (next != null && ORDER.compare(next, row) < 0) {
+                emitNext();
+            }
+            if (!pendingIds.contains(row.getId())) {
+                consumer.accept(row);
+            }
+        }
+
+        /**
+         * Reicht die offenen Einträge hinter der letzten Zeile des Schnappschusses weiter
+         */
+        void finish() {
+            while (next != null) {
+                emitNext();
+            }
+        }
+
+        private void emitNext() {
+            consumer.accept(next);
+            next = pending.hasNext() ? pending.next() : null;
+        }
+    }
+
+    /**
+     * Führt ein INSERT ... RETURNING id aus und liefert die vergebene ID
+     */
+    private int executeInsertReturningId(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("INSERT hat keine ID zurückgegeben");
+            }
+            return rs.getInt(1);
+        }
+    }
+
+    /**
+     * select (mit %s für das Schema) über alle übergebenen Schemas (siehe DatabaseManager.attachPartitions).
+     * Die Bedingung steht in jedem Teil der UNION ALL, ihre Parameter sind also pro Schema zu binden.
+     */
+    private static String partitionedSelect(List<String> schemas, String select, String where, String orderBy) {
+        if (schemas.size() == 1) {
+            return select.formatted(schemas.get(0)) + " WHERE " + where + " ORDER BY " + orderBy;
+        }
+        StringJoiner union = new StringJoiner(" UNION ALL ", "SELECT * FROM (", ") ORDER BY " + orderBy);
+        for (String schema : schemas) {
+            union.add(select.formatted(schema) + " WHERE " + where);
+        }
+        return union.toString();
+    }
+
+    private static void bindDateRange(PreparedStatement pstmt, int partitions, LocalDate from, LocalDate to)
+            throws SQLException {
+        for (int i = 0; i < partitions; i++) {
+            ColumnCodec.bindDate(pstmt, 2 * i + 1, from);
+            ColumnCodec.bindDate(pstmt, 2 * i + 2, to);
+        }
+    }
+
+    private void bindTimeEntry(PreparedStatement pstmt, TimeEntry entry) throws SQLException {
+        ColumnCodec.bindDate(pstmt, 1, entry.getDate());
+        ColumnCodec.bindTime(pstmt, 2, entry.getStartTime());
+        ColumnCodec.bindTime(pstmt, 3, entry.getEndTime());
+        pstmt.setInt(4, entry.getDescriptionId());
+        pstmt.setBoolean(5, entry.isBreak());
+    }
+
+    private void bindConsolidatedEntry(PreparedStatement pstmt, ConsolidatedEntry entry) throws SQLException {
+        ColumnCodec.bindDate(pstmt, 1, entry.getDate());
+        ColumnCodec.bindTime(pstmt, 2, entry.getStartTime());
+        ColumnCodec.bindTime(pstmt, 3, entry.getEndTime());
+        pstmt.setString(4, entry.getDescription());
+        pstmt.setInt(5, entry.getDurationMinutes());
+    }
+
     // Hilfsmethoden für ResultSet Mapping
     private TimeEntry mapResultSetToTimeEntry(ResultSet rs) throws SQLException {
         TimeEntry entry = new TimeEntry();
         entry.setId(rs.getInt("id"));
-        entry.setDate(LocalDate.parse(rs.getString("date")));
-        entry.setStartTime(LocalTime.parse(rs.getString("start_time")));
+        entry.setDate(ColumnCodec.readDate(rs, "date"));
+        entry.setStartTime(ColumnCodec.readTime(rs, "start_time"));
+        entry.setEndTime(ColumnCodec.readTime(rs, "end_time"));
 
-        String endTimeStr = rs.getString("end_time");
-        if (endTimeStr != null) {
-            entry.setEndTime(LocalTime.parse(endTimeStr));
-        }
-
-        entry.setDescription(rs.getString("description"));
+        entry.setInternedDescription(rs.getInt("description_id"), rs.getString("description"));
         entry.setBreak(rs.getBoolean("is_break"));
 
         return entry;
@@ -295,14 +1155,24 @@ public class TimeEntryDAO {
     private ConsolidatedEntry mapResultSetToConsolidatedEntry(ResultSet rs) throws SQLException {
         return new ConsolidatedEntry(
                 rs.getInt("id"),
-                LocalDate.parse(rs.getString("date")),
-                LocalTime.parse(rs.getString("start_time")),
-                LocalTime.parse(rs.getString("end_time")),
+                ColumnCodec.readDate(rs, "date"),
+                ColumnCodec.readTime(rs, "start_time"),
+                ColumnCodec.readTime(rs, "end_time"),
                 rs.getString("description"),
                 rs.getInt("duration_minutes")
         );
     }
 
+    private DayStatistics mapResultSetToDayStatistics(ResultSet rs) throws SQLException {
+        return new DayStatistics(
+                ColumnCodec.readDate(rs, "date"),
+                rs.getInt("entry_count"),
+                rs.getLong("work_minutes"),
+                rs.getLong("break_minutes"),
+                rs.getBoolean("closed")
+        );
+    }
+
     private ActivityDescription mapResultSetToActivityDescription(ResultSet rs) throws SQLException {
         return new ActivityDescription(
                 rs.getInt("id"),
@@ -313,23 +1183,270 @@ public class TimeEntryDAO {
     }
 
     // Statistik-Methoden
-    public long getTotalWorkMinutesToday() {
-        LocalDate today = LocalDate.now();
-        List<TimeEntry> entries = getTimeEntriesByDate(today);
 
-        return entries.stream()
-                .filter(e -> !e.isBreak() && e.getEndTime() != null)
-                .mapToLong(TimeEntry::getDurationMinutes)
-                .sum();
+    /**
+     * Gesamt-, Netto- und Pausenminuten eines Tages aus der per Trigger gepflegten Tabelle daily_summary,
+     * im Journal-Modus einschließlich der offenen Ereignisse
+     */
+    public DayStatistics getDayStatistics(LocalDate date) {
+        String sql = "SELECT " + DAY_STATISTICS_COLUMNS + " FROM daily_summary WHERE date=?";
+
+        try (Connection conn = dbManager.getReadConnection()) {
+            Map<LocalDate, DayStatistics> byDate = new TreeMap<>();
+            readConsistently(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    ColumnCodec.bindDate(pstmt, 1, date);
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            byDate.put(date, mapResultSetToDayStatistics(rs));
+                        }
+                    }
+                }
+                applyPendingStatistics(conn, byDate, date, date);
+            });
+            return byDate.getOrDefault(date, DayStatistics.empty(date));
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der Tagesstatistik: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return DayStatistics.empty(date);
     }
 
-    public long getTotalBreakMinutesToday() {
-        LocalDate today = LocalDate.now();
-        List<TimeEntry> entries = getTimeEntriesByDate(today);
+    /**
+     * Tagesstatistiken für alle Tage mit Einträgen oder Abschluss von from bis einschließlich to,
+     * im Journal-Modus einschließlich der offenen Ereignisse
+     */
+    public List<DayStatistics> getDayStatisticsBetween(LocalDate from, LocalDate to) {
+        String sql = "SELECT " + DAY_STATISTICS_COLUMNS +
+                " FROM daily_summary WHERE date BETWEEN ? AND ? ORDER BY date";
+        List<DayStatistics> statistics = new ArrayList<>();
+
+        try (Connection conn = dbManager.getReadConnection()) {
+            Map<LocalDate, DayStatistics> byDate = new TreeMap<>();
+            readConsistently(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    ColumnCodec.bindDate(pstmt, 1, from);
+                    ColumnCodec.bindDate(pstmt, 2, to);
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            DayStatistics day = mapResultSetToDayStatistics(rs);
+                            byDate.put(day.getDate(), day);
+                        }
+                    }
+                }
+                applyPendingStatistics(conn, byDate, from, to);
+            });
+            statistics.addAll(byDate.values());
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der Tagesstatistiken: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Im Journal-Modus: rechnet die offenen Ereignisse in die Tagessummen von from bis to ein, wie es die
+     * Trigger beim Verdichten tun. Pro Eintrag wird der Beitrag aus dem Schnappschuss abgezogen und der des
+     * letzten Stands addiert.
+     */
+    private void applyPendingStatistics(Connection conn, Map<LocalDate, DayStatistics> byDate,
+                                        LocalDate from, LocalDate to) throws SQLException {
+        if (!journal.isEnabled()) return;
+
+        // Pro Tag: Arbeitsminuten, Pausenminuten, Anzahl
+        Map<LocalDate, long[]> deltas = new HashMap<>();
+        for (Map.Entry<Integer, TimeEntry> pending : journal.pendingStates(conn).entrySet()) {
+            addToStatistics(deltas, journal.snapshot(conn, pending.getKey()), -1);
+            addToStatistics(deltas, pending.getValue(), 1);
+        }
+
+        deltas.forEach((date, delta) -> {
+            if (date.isBefore(from) || date.isAfter(to)) return;
+
+            DayStatistics day = byDate.getOrDefault(date, DayStatistics.empty(date));
+            int entryCount = day.getEntryCount() + (int) delta[2];
+            if (entryCount <= 0 && !day.isClosed()) {
+                byDate.remove(date);
+            } else {
+                byDate.put(date, new DayStatistics(date, entryCount, day.getWorkMinutes() + delta[0],
+                        day.getBreakMinutes() + delta[1], day.isClosed()));
+            }
+        });
+    }
 
-        return entries.stream()
-                .filter(e -> e.isBreak() && e.getEndTime() != null)
-                .mapToLong(TimeEntry::getDurationMinutes)
-                .sum();
+    private static void addToStatistics(Map<LocalDate, long[]> deltas, TimeEntry entry, int sign) {
+        if (entry == null) return;
+
+        long[] delta = deltas.computeIfAbsent(entry.getDate(), date -> new long[3]);
+        // Volle Minuten, laufende Einträge zählen wie in daily_summary nicht
+        delta[entry.isBreak() ? 1 : 0] += sign * entry.getDurationMinutes();
+        delta[2] += sign;
+    }
+
+    /**
+     * Berechnet daily_summary vollständig neu und legt fehlende Trigger wieder an,
+     * z.B. nach Änderungen an der Datenbank mit externen Werkzeugen
+     */
+    public boolean rebuildDailySummary() {
+        try (Connection conn = dbManager.getConnection()) {
+            // Die Summen archivierter Jahre stehen ebenfalls in daily_summary
+            List<String> schemas = dbManager.attachPartitions(conn, LocalDate.MIN, LocalDate.MAX);
+            runInTransaction(conn, () -> {
+                journal.compact(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    SchemaMigrator.createDailySummaryTriggers(stmt);
+                    SchemaMigrator.rebuildDailySummary(stmt, schemas);
+                }
+            });
+            System.out.println("Tagessummen neu berechnet");
+            return true;
+        } catch (SQLException e) {
+            dbManager.markRollbackOnly();
+            System.err.println("Fehler beim Neuberechnen der Tagessummen: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // Archivierung
+
+    /**
+     * Jahre, deren Einträge in Archivdateien liegen. Diese Einträge sind schreibgeschützt:
+     * Änderungen und Löschungen wirken nur auf die Hauptdatenbank. Die Menge wird beim Archivieren
+     * weiterer Jahre fortgeschrieben und darf auf jedem Thread gelesen werden.
+     */
+    public Set<Integer> getArchivedYears() {
+        return dbManager.getArchivedYears();
+    }
+
+    /**
+     * Jahre vor dem laufenden Jahr, die noch Einträge in der Hauptdatenbank haben
+     * (im Journal-Modus einschließlich der offenen Ereignisse)
+     */
+    public List<Integer> getArchivableYears() {
+        LocalDate firstOfYear = LocalDate.now().withDayOfYear(1);
+        // Im Journal-Modus zählen Einträge mit offenen Ereignissen mit ihrem letzten Stand
+        String sql = "SELECT DISTINCT CAST(strftime('%Y', date * 86400, 'unixepoch') AS INTEGER) AS year " +
+                "FROM time_entries WHERE date < ?" +
+                (journal.isEnabled() ? " AND id NOT IN (" + MutationJournal.PENDING_ENTRY_IDS_SQL + ")" : "");
+        Set<Integer> years = new TreeSet<>();
+
+        try (Connection conn = dbManager.getReadConnection()) {
+            readConsistently(conn, () -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    ColumnCodec.bindDate(pstmt, 1, firstOfYear);
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            years.add(rs.getInt("year"));
+                        }
+                    }
+                }
+                if (journal.isEnabled()) {
+                    for (TimeEntry entry : journal.pendingStates(conn).values()) {
+                        if (entry != null && entry.getDate().isBefore(firstOfYear)) {
+                            years.add(entry.getDate().getYear());
+                        }
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Laden der archivierbaren Jahre: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return new ArrayList<>(years);
+    }
+
+    /**
+     * Verschiebt alle Einträge eines abgeschlossenen Jahres in dessen Archivdatei. Die Tagessummen bleiben
+     * in der Hauptdatenbank, gelesen wird das Archiv danach transparent über die Abfragen nach Datum.
+     * Archivierte Einträge werden von Änderungen und Löschungen nicht mehr erfasst und nicht mehr synchronisiert.
+     * Ohne laufende Transaktion aufzurufen, weil ATTACH in einer Transaktion nicht möglich ist.
+     */
+    public boolean archiveYear(int year) {
+        if (year >= LocalDate.now().getYear()) {
+            System.err.println("Nur abgeschlossene Jahre können archiviert werden: " + year);
+            return false;
+        }
+        long firstDay = LocalDate.ofYearDay(year, 1).toEpochDay();
+        long lastDay = LocalDate.ofYearDay(year, 1).with(TemporalAdjusters.lastDayOfYear()).toEpochDay();
+        String range = " WHERE date BETWEEN " + firstDay + " AND " + lastDay;
+
+        try (Connection conn = dbManager.getConnection()) {
+            if (!conn.getAutoCommit()) {
+                throw new SQLException("Archivieren ist innerhalb einer Transaktion nicht möglich");
+            }
+            // Ausgelagert wird der Schnappschuss; offene Ereignisse des Jahres gehören noch dazu
+            journal.compact(conn);
+            // Vor dem ATTACH prüfen, damit ein abgelehntes Jahr keine leere Archivdatei hinterlässt.
+            // Die Schreibverbindung bleibt bis zum Ende gehalten, es kommen also keine Einträge hinzu.
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery(
+                         "SELECT COUNT(*) FROM main.time_entries" + range + " AND end_time IS NULL")) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    throw new SQLException("Das Jahr " + year + " enthält noch laufende Einträge");
+                }
+            }
+
+            boolean newArchive = !dbManager.getArchivedYears().contains(year);
+            String schema = dbManager.attachArchive(conn, year);
+
+            int[] moved = {0};
+            try {
+                runInTransaction(conn, () -> {
+                    try (Statement stmt = conn.createStatement()) {
+                        SchemaMigrator.createArchiveTables(stmt, schema);
+                        // Auslagern ist keine Löschung: andere Geräte sollen ihre Kopien behalten
+                        stmt.execute("UPDATE main.sync_state SET capture_paused = 1");
+                        // Die Lösch-Trigger würden die Tagessummen des Jahres entfernen; sie bleiben aber gültig
+                        stmt.execute("DROP TABLE IF EXISTS temp.archived_summary");
+                        stmt.execute("CREATE TEMP TABLE archived_summary AS SELECT * FROM main.daily_summary" + range);
+
+                        // OR REPLACE: ein abgebrochener Lauf kann einfach wiederholt werden
+                        moved[0] = stmt.executeUpdate("INSERT OR REPLACE INTO " + schema + ".time_entries " +
+                                "SELECT * FROM main.time_entries" + range);
+                        stmt.executeUpdate("INSERT OR REPLACE INTO " + schema + ".consolidated_entries " +
+                                "SELECT * FROM main.consolidated_entries" + range);
+                        stmt.executeUpdate("DELETE FROM main.time_entries" + range);
+                        stmt.executeUpdate("DELETE FROM main.consolidated_entries" + range);
+
+                        stmt.execute("INSERT OR REPLACE INTO main.daily_summary SELECT * FROM temp.archived_summary");
+                        stmt.execute("DROP TABLE temp.archived_summary");
+                        stmt.execute("UPDATE main.sync_state SET capture_paused = 0");
+                    }
+                });
+            } catch (SQLException | RuntimeException e) {
+                // Eine neu angelegte Datei darf nicht als Archiv des Jahres liegen bleiben
+                if (newArchive) {
+                    dbManager.archiveFailed(conn, year);
+                }
+                throw e;
+            }
+            dbManager.archiveCreated(year);
+            // Die Tage liegen jetzt im Archiv und sind schreibgeschützt
+            dayCache.invalidate(LocalDate.ofEpochDay(firstDay), LocalDate.ofEpochDay(lastDay));
+            // Kein VACUUM hier: es hielte die Schreibverbindung für den ganzen Neuaufbau fest. Die frei
+            // gewordenen Seiten gibt DatabaseMaintenance schrittweise per incremental_vacuum zurück.
+
+            System.out.println("Jahr " + year + " archiviert: " + moved[0] + " Einträge nach " + schema);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Fehler beim Archivieren des Jahres " + year + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public long getTotalWorkMinutesToday() {
+        return getDayStatistics(LocalDate.now()).getWorkMinutes();
+    }
+
+    public long getTotalBreakMinutesToday() {
+        return getDayStatistics(LocalDate.now()).getBreakMinutes();
     }
-}
\ No newline at end of file
+}
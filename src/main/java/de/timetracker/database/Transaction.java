@@ -0,0 +1,118 @@
+package de.timetracker.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Laufende Schreibtransaktion auf der Schreibverbindung (Unit of Work).
+ * Alle DAO-Aufrufe desselben Threads laufen bis zum Commit in dieser Transaktion.
+ */
+public final class Transaction implements AutoCloseable {
+    private final Connection connection;
+    private final Runnable onClose;
+    private final Map<Savepoint, Boolean> rollbackOnlyAtSavepoint = new IdentityHashMap<>();
+    private final Map<Savepoint, Integer> afterCommitCountAtSavepoint = new IdentityHashMap<>();
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
+    private boolean rollbackOnly = false;
+    private boolean completed = false;
+    private int savepointCounter = 0;
+
+    Transaction(Connection connection, Runnable onClose) {
+        this.connection = connection;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Führt die Aktion erst nach dem Commit aus, z.B. um Caches nachzuführen, damit andere Threads keine
+     * unbestätigten Änderungen sehen. Bei einem Rollback (auch auf einen früheren Savepoint) entfällt sie.
+     */
+    void afterCommit(Runnable action) {
+        afterCommitActions.add(action);
+    }
+
+    /**
+     * Setzt einen Savepoint, auf den ein Teil der Änderungen zurückgerollt werden kann
+     */
+    public Savepoint savepoint(String name) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint(name + "_" + (++savepointCounter));
+        rollbackOnlyAtSavepoint.put(savepoint, rollbackOnly);
+        afterCommitCountAtSavepoint.put(savepoint, afterCommitActions.size());
+        return savepoint;
+    }
+
+    /**
+     * Verwirft alle Änderungen seit dem Savepoint. Fehler, die danach auftraten,
+     * gelten damit als behandelt und erzwingen kein Rollback der ganzen Transaktion mehr.
+     */
+    public void rollbackTo(Savepoint savepoint) throws SQLException {
+        connection.rollback(savepoint);
+        Boolean previous = rollbackOnlyAtSavepoint.get(savepoint);
+        if (previous != null) {
+            rollbackOnly = previous;
+        }
+        Integer actionCount = afterCommitCountAtSavepoint.get(savepoint);
+        if (actionCount != null) {
+            afterCommitActions.subList(actionCount, afterCommitActions.size()).clear();
+        }
+    }
+
+    public void release(Savepoint savepoint) throws SQLException {
+        connection.releaseSavepoint(savepoint);
+        rollbackOnlyAtSavepoint.remove(savepoint);
+        afterCommitCountAtSavepoint.remove(savepoint);
+    }
+
+    /**
+     * Markiert die Transaktion, sodass sie am Ende zurückgerollt statt committet wird
+     */
+    public void setRollbackOnly() {
+        this.rollbackOnly = true;
+    }
+
+    public boolean isRollbackOnly() {
+        return rollbackOnly;
+    }
+
+    void commit() throws SQLException {
+        if (rollbackOnly) {
+            throw new SQLException("Transaktion ist als rollback-only markiert");
+        }
+        connection.commit();
+        completed = true;
+        // Die Daten sind bereits committet; ein Fehler hier darf nicht als fehlgeschlagener Commit erscheinen
+        for (Runnable action : afterCommitActions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Aktion nach dem Commit fehlgeschlagen: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        afterCommitActions.clear();
+    }
+
+    void rollback() throws SQLException {
+        connection.rollback();
+        completed = true;
+        afterCommitActions.clear();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (!completed) {
+                connection.rollback();
+                afterCommitActions.clear();
+            }
+            connection.setAutoCommit(true);
+        } finally {
+            onClose.run();
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package de.timetracker.database;
+
+import java.sql.SQLException;
+
+/**
+ * Arbeitseinheit, die von {@link TimeEntryDAO#inTransaction(TransactionCallback)} atomar ausgeführt wird
+ */
+@FunctionalInterface
+public interface TransactionCallback {
+    void execute(Transaction tx) throws SQLException;
+}
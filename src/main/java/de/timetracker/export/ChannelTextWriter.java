@@ -0,0 +1,74 @@
+package de.timetracker.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Schreibt Text UTF-8-kodiert über einen festen Puffer in einen Channel. Der Channel wird erst
+ * beschrieben, wenn der Puffer voll ist, statt einmal pro Zeile.
+ */
+public final class ChannelTextWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long bytesWritten = 0;
+
+    public ChannelTextWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public ChannelTextWriter write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                return this;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    public ChannelTextWriter newLine() throws IOException {
+        return write("\n");
+    }
+
+    /**
+     * Schreibt den Pufferinhalt in den Channel
+     */
+    public void flush() throws IOException {
+        drain();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Schreibt den Rest des Puffers; der Channel selbst wird vom Aufrufer geschlossen
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,42 @@
+package de.timetracker.export;
+
+import de.timetracker.model.TimeEntry;
+import de.timetracker.utils.TimeFormatter;
+
+import java.io.IOException;
+
+/**
+ * CSV im bisherigen Exportformat: Datum,Startzeit,Endzeit,Dauer,Beschreibung,Pause
+ */
+public class CsvExportSink implements ExportSink {
+    public static final String HEADER = "Datum,Startzeit,Endzeit,Dauer,Beschreibung,Pause";
+
+    private final StringBuilder line = new StringBuilder(128);
+
+    @Override
+    public String getDisplayName() {
+        return "CSV-Dateien";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "csv";
+    }
+
+    @Override
+    public void writeHeader(ChannelTextWriter out) throws IOException {
+        out.write(HEADER).newLine();
+    }
+
+    @Override
+    public void writeEntry(ChannelTextWriter out, TimeEntry entry) throws IOException {
+        line.setLength(0);
+        line.append(TimeFormatter.formatForExport(entry.getDate())).append(',')
+                .append(TimeFormatter.formatForExport(entry.getStartTime())).append(',')
+                .append(entry.getEndTime() != null ? TimeFormatter.formatForExport(entry.getEndTime()) : "").append(',')
+                .append(entry.getDurationFormatted()).append(',')
+                .append('"').append(entry.getDescription().replace("\"", "\"\"")).append('"').append(',') // CSV-Escaping
+                .append(entry.isBreak() ? "Ja" : "Nein");
+        out.write(line).newLine();
+    }
+}
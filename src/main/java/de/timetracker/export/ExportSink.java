@@ -0,0 +1,30 @@
+package de.timetracker.export;
+
+import de.timetracker.model.TimeEntry;
+
+import java.io.IOException;
+
+/**
+ * Ausgabeformat für den Export. Der Exporter ruft writeHeader einmal, writeEntry für jeden Eintrag
+ * in Datums- und Startzeitreihenfolge und zum Schluss writeFooter auf.
+ */
+public interface ExportSink {
+
+    /**
+     * Name für die Formatauswahl im Dialog
+     */
+    String getDisplayName();
+
+    /**
+     * Dateiendung ohne Punkt
+     */
+    String getFileExtension();
+
+    default void writeHeader(ChannelTextWriter out) throws IOException {
+    }
+
+    void writeEntry(ChannelTextWriter out, TimeEntry entry) throws IOException;
+
+    default void writeFooter(ChannelTextWriter out) throws IOException {
+    }
+}
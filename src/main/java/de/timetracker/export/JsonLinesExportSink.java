@@ -0,0 +1,68 @@
+package de.timetracker.export;
+
+import de.timetracker.model.TimeEntry;
+
+import java.io.IOException;
+
+/**
+ * JSON Lines: ein JSON-Objekt pro Eintrag und Zeile, Datum und Uhrzeiten im ISO-Format
+ */
+public class JsonLinesExportSink implements ExportSink {
+    private final StringBuilder line = new StringBuilder(160);
+
+    @Override
+    public String getDisplayName() {
+        return "JSON Lines";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "jsonl";
+    }
+
+    @Override
+    public void writeEntry(ChannelTextWriter out, TimeEntry entry) throws IOException {
+        line.setLength(0);
+        line.append("{\"id\":").append(entry.getId())
+                .append(",\"date\":\"").append(entry.getDate()).append('"')
+                .append(",\"start\":\"").append(entry.getStartTime()).append('"')
+                .append(",\"end\":");
+        if (entry.getEndTime() != null) {
+            line.append('"').append(entry.getEndTime()).append('"');
+        } else {
+            line.append("null");
+        }
+        line.append(",\"durationMinutes\":").append(entry.getDurationMinutes())
+                .append(",\"description\":");
+        appendJsonString(entry.getDescription());
+        line.append(",\"break\":").append(entry.isBreak())
+                .append('}');
+        out.write(line).newLine();
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
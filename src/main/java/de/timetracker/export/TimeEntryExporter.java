@@ -0,0 +1,94 @@
+package de.timetracker.export;
+
+import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.model.DayStatistics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Exportiert alle TimeEntries eines Zeitraums zeilenweise in eine Datei, ohne sie vorher in den Speicher
+ * zu laden. Geschrieben wird zunächst in eine temporäre Datei, die erst nach vollständigem Export
+ * die Zieldatei ersetzt.
+ */
+public class TimeEntryExporter {
+    private static final int PROGRESS_INTERVAL = 500;
+
+    /**
+     * Fortschritt des Exports; wird auf dem exportierenden Thread aufgerufen
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long exported, long total);
+    }
+
+    private final TimeEntryDAO dao;
+
+    public TimeEntryExporter(TimeEntryDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return Anzahl der exportierten Einträge
+     */
+    public long export(LocalDate from, LocalDate to, ExportSink sink, Path target,
+                       ProgressListener listener) throws IOException {
+        long total = countEntries(from, to);
+        long[] exported = {0};
+
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            boolean complete;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 ChannelTextWriter out = new ChannelTextWriter(channel)) {
+
+                sink.writeHeader(out);
+                try {
+                    complete = dao.forEachTimeEntry(from, to, entry -> {
+                        try {
+                            sink.writeEntry(out, entry);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        if (++exported[0] % PROGRESS_INTERVAL == 0) {
+                            listener.progress(exported[0], Math.max(total, exported[0]));
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                sink.writeFooter(out);
+            }
+
+            if (!complete) {
+                throw new IOException("Einträge konnten nicht vollständig aus der Datenbank gelesen werden");
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        listener.progress(exported[0], exported[0]);
+        System.out.println("Export abgeschlossen: " + exported[0] + " Einträge von " + from + " bis " + to +
+                " nach " + target);
+        return exported[0];
+    }
+
+    // Anzahl aus daily_summary, ohne die Einträge selbst zu zählen
+    private long countEntries(LocalDate from, LocalDate to) {
+        long total = 0;
+        for (DayStatistics statistics : dao.getDayStatisticsBetween(from, to)) {
+            total += statistics.getEntryCount();
+        }
+        return total;
+    }
+}
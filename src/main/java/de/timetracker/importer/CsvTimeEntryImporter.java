@@ -0,0 +1,289 @@
+package de.timetracker.importer;
+
+import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.export.CsvExportSink;
+import de.timetracker.model.TimeEntry;
+import de.timetracker.utils.TimeFormatter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Importiert TimeEntries aus CSV-Dateien im Exportformat (Datum,Startzeit,Endzeit,Dauer,Beschreibung,Pause).
+ * Die Zeilen werden blockweise parallel geparst und gegen sich selbst sowie vorhandene Einträge auf
+ * Überschneidungen geprüft. Nur wenn alle Zeilen gültig sind, wird alles in einer Transaktion eingefügt;
+ * der Abgleich mit vorhandenen Einträgen läuft in derselben Transaktion.
+ * Zeilen ohne Endzeit (laufende Einträge) werden abgelehnt: es darf nur die eine laufende Aktivität geben,
+ * die über Start/Stopp entsteht.
+ */
+public class CsvTimeEntryImporter {
+    private static final int CHUNK_SIZE = 5000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    /**
+     * Fortschritt des Imports; wird auf beliebigen Threads aufgerufen
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        void progress(long parsed, long total);
+    }
+
+    /**
+     * Ergebnis eines Imports: Anzahl eingefügter Einträge oder die gefundenen Fehler
+     */
+    public static final class ImportResult {
+        private final int importedCount;
+        private final List<String> errors;
+
+        private ImportResult(int importedCount, List<String> errors) {
+            this.importedCount = importedCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public int getImportedCount() {
+            return importedCount;
+        }
+
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public boolean isSuccessful() {
+            return errors.isEmpty();
+        }
+    }
+
+    private final TimeEntryDAO dao;
+
+    public CsvTimeEntryImporter(TimeEntryDAO dao) {
+        this.dao = dao;
+    }
+
+    public ImportResult importFile(Path file, ProgressListener listener) throws IOException {
+        List<String> lines = readDataLines(file);
+
+        // Parsen in Blöcken parallel; die Reihenfolge der Blöcke bleibt erhalten
+        List<int[]> chunks = new ArrayList<>();
+        for (int start = 0; start < lines.size(); start += CHUNK_SIZE) {
+            chunks.add(new int[]{start, Math.min(start + CHUNK_SIZE, lines.size())});
+        }
+        AtomicInteger parsed = new AtomicInteger();
+        List<ParsedChunk> results = chunks.parallelStream()
+                .map(chunk -> {
+                    ParsedChunk result = parseChunk(lines, chunk[0], chunk[1]);
+                    listener.progress(parsed.addAndGet(chunk[1] - chunk[0]), lines.size());
+                    return result;
+                })
+                .toList();
+
+        List<TimeEntry> entries = new ArrayList<>(lines.size());
+        List<String> errors = new ArrayList<>();
+        for (ParsedChunk result : results) {
+            entries.addAll(result.entries);
+            errors.addAll(result.errors);
+        }
+
+        if (!errors.isEmpty()) {
+            return new ImportResult(0, limit(errors));
+        }
+        if (entries.isEmpty()) {
+            return new ImportResult(0, errors);
+        }
+
+        // Prüfung und Einfügen in derselben Transaktion, damit kein anderer Schreibzugriff dazwischen
+        // einen überschneidenden Eintrag anlegen kann. IDs als zusammenhängender Block: ein Batch-INSERT,
+        // Beschreibungen einmal pro Text aktualisiert.
+        boolean committed = dao.inTransaction(tx -> {
+            validateOverlaps(entries, errors);
+            if (!errors.isEmpty()) {
+                tx.setRollbackOnly();
+                return;
+            }
+            int firstId = dao.nextTimeEntryId();
+            if (firstId <= 0 || !dao.insertTimeEntries(entries, firstId)) {
+                tx.setRollbackOnly();
+            }
+        });
+        if (!errors.isEmpty()) {
+            return new ImportResult(0, limit(errors));
+        }
+        if (!committed) {
+            errors.add("Einträge konnten nicht gespeichert werden");
+            return new ImportResult(0, errors);
+        }
+
+        System.out.println("Import abgeschlossen: " + entries.size() + " Einträge aus " + file);
+        return new ImportResult(entries.size(), errors);
+    }
+
+    private static List<String> readDataLines(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return lines;
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1); // BOM aus Tabellenkalkulationen
+            }
+            if (!header.trim().equalsIgnoreCase(CsvExportSink.HEADER)) {
+                throw new IOException("Unbekanntes Spaltenformat, erwartet: " + CsvExportSink.HEADER);
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private static final class ParsedChunk {
+        private final List<TimeEntry> entries = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+    }
+
+    private static ParsedChunk parseChunk(List<String> lines, int from, int to) {
+        ParsedChunk result = new ParsedChunk();
+        for (int i = from; i < to; i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) continue;
+
+            int lineNumber = i + 2; // Kopfzeile und 1-basiert
+            try {
+                result.entries.add(parseLine(line));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                result.errors.add("Zeile " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static TimeEntry parseLine(String line) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() != 6) {
+            throw new IllegalArgumentException("6 Spalten erwartet, " + fields.size() + " gefunden");
+        }
+
+        LocalDate date = TimeFormatter.parseDate(fields.get(0));
+        LocalTime startTime = TimeFormatter.parseTime(fields.get(1));
+        if (fields.get(2).isBlank()) {
+            throw new IllegalArgumentException("Endzeit fehlt, laufende Einträge können nicht importiert werden");
+        }
+        LocalTime endTime = TimeFormatter.parseTime(fields.get(2));
+        String description = fields.get(4).trim();
+        String pause = fields.get(5).trim();
+
+        if (endTime.isBefore(startTime)) {
+            throw new IllegalArgumentException("Endzeit liegt vor der Startzeit");
+        }
+        if (description.isEmpty()) {
+            throw new IllegalArgumentException("Beschreibung fehlt");
+        }
+        if (!pause.equalsIgnoreCase("Ja") && !pause.equalsIgnoreCase("Nein")) {
+            throw new IllegalArgumentException("Pause muss Ja oder Nein sein: " + pause);
+        }
+
+        TimeEntry entry = new TimeEntry(date, startTime, description);
+        entry.setEndTime(endTime);
+        entry.setBreak(pause.equalsIgnoreCase("Ja"));
+        return entry;
+    }
+
+    /**
+     * Zerlegt eine CSV-Zeile; Felder in Anführungszeichen dürfen Kommas und verdoppelte Anführungszeichen enthalten
+     */
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>(6);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Anführungszeichen nicht geschlossen");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Prüft pro Tag, ob sich importierte Einträge untereinander oder mit vorhandenen Einträgen überschneiden.
+     * Läuft innerhalb der Import-Transaktion und liest damit über die Schreibverbindung.
+     */
+    private void validateOverlaps(List<TimeEntry> entries, List<String> errors) {
+        TreeMap<LocalDate, List<TimeEntry>> byDate = new TreeMap<>();
+        for (TimeEntry entry : entries) {
+            byDate.computeIfAbsent(entry.getDate(), date -> new ArrayList<>()).add(entry);
+        }
+        if (byDate.isEmpty()) return;
+
+        // Vorhandene Einträge des Zeitraums nur für die importierten Tage einsammeln
+        Map<LocalDate, List<TimeEntry>> existing = new TreeMap<>();
+        if (!dao.forEachTimeEntry(byDate.firstKey(), byDate.lastKey(), entry -> {
+            if (byDate.containsKey(entry.getDate())) {
+                existing.computeIfAbsent(entry.getDate(), date -> new ArrayList<>()).add(entry);
+            }
+        })) {
+            errors.add("Vorhandene Einträge konnten nicht geprüft werden");
+            return;
+        }
+
+        for (Map.Entry<LocalDate, List<TimeEntry>> day : byDate.entrySet()) {
+            List<TimeEntry> all = new ArrayList<>(day.getValue());
+            all.addAll(existing.getOrDefault(day.getKey(), List.of()));
+            all.sort(Comparator.comparing(TimeEntry::getStartTime));
+
+            for (int i = 1; i < all.size(); i++) {
+                TimeEntry previous = all.get(i - 1);
+                TimeEntry current = all.get(i);
+                if (previous.getEndTime() == null || previous.getEndTime().isAfter(current.getStartTime())) {
+                    errors.add(String.format("%s: %s-%s \"%s\" überschneidet sich mit %s \"%s\"%s",
+                            TimeFormatter.formatDate(day.getKey()),
+                            previous.getStartTimeFormatted(), previous.getEndTimeFormatted(), previous.getDescription(),
+                            current.getStartTimeFormatted(), current.getDescription(),
+                            previous.getId() > 0 || current.getId() > 0 ? " (bereits vorhanden)" : ""));
+                }
+            }
+        }
+    }
+
+    private static List<String> limit(List<String> errors) {
+        if (errors.size() <= MAX_REPORTED_ERRORS) return errors;
+
+        List<String> limited = new ArrayList<>(errors.subList(0, MAX_REPORTED_ERRORS));
+        limited.add("... und " + (errors.size() - MAX_REPORTED_ERRORS) + " weitere Fehler");
+        return limited;
+    }
+}
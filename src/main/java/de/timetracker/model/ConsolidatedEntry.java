@@ -117,15 +117,21 @@ public class ConsolidatedEntry {
     public static List<ConsolidatedEntry> consolidateTimeEntries(List<TimeEntry> timeEntries) {
         List<ConsolidatedEntry> consolidated = new ArrayList<>();
 
-        // Gruppiere nach Beschreibung (case-insensitive)
-        var groupedEntries = new java.util.HashMap<String, List<TimeEntry>>();
+        // Gruppiere nach Beschreibungs-ID; noch nicht gespeicherte Beschreibungen erhalten
+        // vorläufige negative IDs nach derselben Schreibweise wie im Verzeichnis
+        var groupedEntries = new java.util.HashMap<Integer, List<TimeEntry>>();
+        var provisionalIds = new java.util.HashMap<String, Integer>();
 
         for (TimeEntry entry : timeEntries) {
             if (entry.getEndTime() == null || entry.isBreak()) {
                 continue; // Überspringe aktive Einträge und Pausen
             }
 
-            String key = entry.getDescription().toLowerCase().trim();
+            int key = entry.getDescriptionId();
+            if (key <= 0) {
+                key = provisionalIds.computeIfAbsent(entry.getDescription().trim(),
+                        k -> -(provisionalIds.size() + 1));
+            }
             groupedEntries.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
         }
 
@@ -0,0 +1,71 @@
+package de.timetracker.model;
+
+import java.time.LocalDate;
+
+/**
+ * Tagessummen über alle abgeschlossenen Einträge eines Tages (aus der Tabelle daily_summary)
+ */
+public class DayStatistics {
+    private final LocalDate date;
+    private final int entryCount;
+    private final long workMinutes;
+    private final long breakMinutes;
+    private final boolean closed;
+
+    public DayStatistics(LocalDate date, int entryCount, long workMinutes, long breakMinutes, boolean closed) {
+        this.date = date;
+        this.entryCount = entryCount;
+        this.workMinutes = workMinutes;
+        this.breakMinutes = breakMinutes;
+        this.closed = closed;
+    }
+
+    public static DayStatistics empty(LocalDate date) {
+        return new DayStatistics(date, 0, 0, 0, false);
+    }
+
+    // Getter
+    public LocalDate getDate() {
+        return date;
+    }
+
+    /**
+     * Anzahl aller Einträge des Tages, auch noch laufender
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public long getTotalMinutes() {
+        return workMinutes + breakMinutes;
+    }
+
+    /**
+     * Nettozeit ohne Pausen
+     */
+    public long getWorkMinutes() {
+        return workMinutes;
+    }
+
+    public long getBreakMinutes() {
+        return breakMinutes;
+    }
+
+    /**
+     * true, wenn der Tag abgeschlossen (konsolidiert) ist
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return "DayStatistics{" +
+                "date=" + date +
+                ", entries=" + entryCount +
+                ", work=" + workMinutes + " min" +
+                ", break=" + breakMinutes + " min" +
+                ", closed=" + closed +
+                '}';
+    }
+}
@@ -11,6 +11,7 @@ public class TimeEntry {
     private LocalTime startTime;
     private LocalTime endTime;
     private String description;
+    private int descriptionId; // ID in activity_descriptions, 0 solange noch nicht gespeichert
     private boolean isBreak;
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
@@ -36,6 +37,19 @@ public class TimeEntry {
         this.isBreak = isBreakActivity(description);
     }
 
+    /**
+     * Kopie mit allen Feldern, z.B. als Schnappschuss, den ein anderer Thread lesen darf
+     */
+    public TimeEntry(TimeEntry other) {
+        this.id = other.id;
+        this.date = other.date;
+        this.startTime = other.startTime;
+        this.endTime = other.endTime;
+        this.description = other.description;
+        this.descriptionId = other.descriptionId;
+        this.isBreak = other.isBreak;
+    }
+
     // Getter und Setter
     public int getId() {
         return id;
@@ -74,10 +88,33 @@ public class TimeEntry {
     }
 
     public void setDescription(String description) {
+        if (!sameDescription(this.description, description)) {
+            this.descriptionId = 0;
+        }
         this.description = description;
         this.isBreak = isBreakActivity(description);
     }
 
+    /**
+     * ID der Beschreibung im Verzeichnis; gleiche Schreibweisen haben dieselbe ID, schon eine andere
+     * Groß-/Kleinschreibung ergibt eine eigene. 0 bei noch nicht gespeicherter Beschreibung.
+     */
+    public int getDescriptionId() {
+        return descriptionId;
+    }
+
+    /**
+     * Wird vom DAO gesetzt: ID und gespeicherte Schreibweise aus dem Verzeichnis. isBreak bleibt unverändert.
+     */
+    public void setInternedDescription(int descriptionId, String description) {
+        this.descriptionId = descriptionId;
+        this.description = description;
+    }
+
+    private static boolean sameDescription(String a, String b) {
+        return a != null && b != null && a.trim().equals(b.trim());
+    }
+
     public boolean isBreak() {
         return isBreak;
     }
@@ -1,8 +1,10 @@
 package de.timetracker.ui;
 
+import de.timetracker.database.AsyncTimeEntryDAO;
 import de.timetracker.database.TimeEntryDAO;
 import de.timetracker.model.TimeEntry;
 import de.timetracker.model.ConsolidatedEntry;
+import de.timetracker.model.DayStatistics;
 import de.timetracker.utils.TimeFormatter;
 
 import javax.swing.*;
@@ -17,11 +19,12 @@ import java.util.List;
  * Dialog zur Anzeige historischer Zeiterfassungsdaten
  */
 public class HistoricalViewDialog extends JDialog {
-    private final TimeEntryDAO dao;
+    private final AsyncTimeEntryDAO dao;
     private JTable timeTable;
     private JTable consolidatedTable;
     private JTabbedPane tabbedPane;
     private JLabel dateLabel;
+    private JLabel archivedLabel;
     private JSpinner dateSpinner;
     private LocalDate selectedDate;
     private JLabel statisticsLabel;
@@ -29,7 +32,7 @@ public class HistoricalViewDialog extends JDialog {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
 
-    public HistoricalViewDialog(Frame owner, TimeEntryDAO dao) {
+    public HistoricalViewDialog(Frame owner, AsyncTimeEntryDAO dao) {
         super(owner, "Historische Zeiterfassung", true);
         this.dao = dao;
         this.selectedDate = LocalDate.now();
@@ -59,6 +62,12 @@ public class HistoricalViewDialog extends JDialog {
         dateLabel = new JLabel("Datum:");
         dateLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
 
+        // Hinweis für archivierte Jahre
+        archivedLabel = new JLabel("Archiviert - Einträge dieses Jahres sind schreibgeschützt");
+        archivedLabel.setFont(new Font(Font.SANS_SERIF, Font.ITALIC, 12));
+        archivedLabel.setForeground(new Color(192, 57, 43));
+        archivedLabel.setVisible(false);
+
         // Time Table
         timeTable = new JTable();
         timeTable.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
@@ -99,6 +108,7 @@ public class HistoricalViewDialog extends JDialog {
 
         topPanel.add(dateLabel);
         topPanel.add(dateSpinner);
+        topPanel.add(archivedLabel);
 
         add(topPanel, BorderLayout.NORTH);
 
@@ -164,38 +174,38 @@ public class HistoricalViewDialog extends JDialog {
     }
 
     private void loadData() {
-        // Lade Zeiteinträge
-        List<TimeEntry> entries = dao.getTimeEntriesByDate(selectedDate);
-        updateTimeTable(entries);
-
-        // Lade konsolidierte Einträge
-        List<ConsolidatedEntry> consolidated = dao.getConsolidatedEntriesByDate(selectedDate);
-        updateConsolidatedTable(consolidated);
+        LocalDate date = selectedDate;
 
         // Aktualisiere Fenstertitel
-        setTitle("Historische Zeiterfassung - " + TimeFormatter.formatDateForTitle(selectedDate));
-
-        // Aktualisiere Statistiken
-        updateStatistics(entries);
-
-        // Status aktualisieren
-        String dayName = TimeFormatter.getDayName(selectedDate.getDayOfWeek().getValue());
-        boolean hasData = !entries.isEmpty() || !consolidated.isEmpty();
-        boolean isCompleted = !consolidated.isEmpty();
+        setTitle("Historische Zeiterfassung - " + TimeFormatter.formatDateForTitle(date));
+
+        // Daten im Hintergrund laden; Antworten für ein inzwischen anderes Datum verwerfen
+        dao.getTimeEntriesByDate(date).thenAcceptBoth(dao.getConsolidatedEntriesByDate(date),
+                (entries, consolidated) -> {
+                    if (date.equals(selectedDate)) {
+                        showData(entries, consolidated);
+                    }
+                });
+
+        dao.getDayStatistics(date).thenAccept(statistics -> {
+            if (date.equals(selectedDate)) {
+                updateStatistics(statistics);
+            }
+        });
 
-        String status = String.format("%s, %s", dayName, selectedDate.format(DATE_FORMATTER));
-        if (!hasData) {
-            status += " - Keine Daten";
-        } else if (isCompleted) {
-            status += " - Tag abgeschlossen";
-        } else {
-            status += " - " + entries.size() + " Einträge";
-        }
+        dao.submit(TimeEntryDAO::getArchivedYears).thenAccept(years -> {
+            if (date.equals(selectedDate)) {
+                archivedLabel.setVisible(years.contains(date.getYear()));
+            }
+        });
+    }
 
-        statusLabel.setText(status);
+    private void showData(List<TimeEntry> entries, List<ConsolidatedEntry> consolidated) {
+        updateTimeTable(entries);
+        updateConsolidatedTable(consolidated);
 
         // Tab-Auswahl basierend auf verfügbaren Daten
-        if (isCompleted) {
+        if (!consolidated.isEmpty()) {
             tabbedPane.setSelectedIndex(1); // Abschluss-Tab
         } else {
             tabbedPane.setSelectedIndex(0); // Detail-Tab
@@ -264,28 +274,27 @@ public class HistoricalViewDialog extends JDialog {
         }
     }
 
-    private void updateStatistics(List<TimeEntry> entries) {
-        long totalMinutes = entries.stream()
-                .filter(e -> e.getEndTime() != null)
-                .mapToLong(TimeEntry::getDurationMinutes)
-                .sum();
-
-        long workMinutes = entries.stream()
-                .filter(e -> e.getEndTime() != null && !e.isBreak())
-                .mapToLong(TimeEntry::getDurationMinutes)
-                .sum();
-
-        long breakMinutes = entries.stream()
-                .filter(e -> e.getEndTime() != null && e.isBreak())
-                .mapToLong(TimeEntry::getDurationMinutes)
-                .sum();
-
+    private void updateStatistics(DayStatistics statistics) {
         statisticsLabel.setText(String.format(
                 "Gesamtzeit: %s | Nettozeit: %s | Pausen: %s",
-                TimeFormatter.formatDuration(totalMinutes),
-                TimeFormatter.formatDuration(workMinutes),
-                TimeFormatter.formatDuration(breakMinutes)
+                TimeFormatter.formatDuration(statistics.getTotalMinutes()),
+                TimeFormatter.formatDuration(statistics.getWorkMinutes()),
+                TimeFormatter.formatDuration(statistics.getBreakMinutes())
         ));
+
+        // Status aus der Tageszusammenfassung
+        LocalDate date = statistics.getDate();
+        String dayName = TimeFormatter.getDayName(date.getDayOfWeek().getValue());
+        String status = String.format("%s, %s", dayName, date.format(DATE_FORMATTER));
+        if (statistics.isClosed()) {
+            status += " - Tag abgeschlossen";
+        } else if (statistics.getEntryCount() == 0) {
+            status += " - Keine Daten";
+        } else {
+            status += " - " + statistics.getEntryCount() + " Einträge";
+        }
+
+        statusLabel.setText(status);
     }
 
     /**
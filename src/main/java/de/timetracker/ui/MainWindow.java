@@ -1,9 +1,20 @@
 package de.timetracker.ui;
 
 import de.timetracker.database.DatabaseManager;
+import de.timetracker.database.BackupService;
+import de.timetracker.database.DatabaseMaintenance;
+import de.timetracker.database.DatabaseSync;
+import de.timetracker.database.JournalCompactor;
+import de.timetracker.database.AsyncTimeEntryDAO;
 import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.export.CsvExportSink;
+import de.timetracker.export.ExportSink;
+import de.timetracker.export.JsonLinesExportSink;
+import de.timetracker.export.TimeEntryExporter;
+import de.timetracker.importer.CsvTimeEntryImporter;
 import de.timetracker.model.TimeEntry;
 import de.timetracker.model.ConsolidatedEntry;
+import de.timetracker.model.DayStatistics;
 import de.timetracker.ui.components.EditableTable;
 import de.timetracker.utils.AlwaysOnTopHandler;
 import de.timetracker.utils.TimeFormatter;
@@ -15,8 +26,12 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -33,14 +48,18 @@ public class MainWindow extends JFrame {
     private JLabel netTimeLabel;
     private JLabel breakTimeLabel;
     private JLabel statusLabel;
+    private JProgressBar taskProgressBar; // Fortschritt von Hintergrundaufgaben wie dem Export
     private JCheckBoxMenuItem alwaysOnTopMenuItem; // Referenz für spätere Updates
 
     // Data and Logic
-    private final TimeEntryDAO dao;
+    private final AsyncTimeEntryDAO dao; // Datenbankzugriffe nie auf dem EDT
     private AlwaysOnTopHandler alwaysOnTopHandler; // Nicht final, da später initialisiert
     private TimeEntry currentActivity;
     private Timer clockTimer;
     private Timer activityMonitorTimer; // Neuer Timer für Aktivitätsüberwachung
+    private BackupService backupService; // Wird auf dem I/O-Thread angelegt
+    private DatabaseMaintenance maintenance; // Wird auf dem I/O-Thread angelegt
+    private JournalCompactor journalCompactor; // Wird auf dem I/O-Thread angelegt
     private boolean isRunning = false;
     private boolean isDayCompleted = false; // Neues Flag für Tagesabschluss-Status
 
@@ -52,7 +71,7 @@ public class MainWindow extends JFrame {
     public MainWindow() {
         System.out.println("Initialisiere TimeTracker MainWindow...");
 
-        this.dao = new TimeEntryDAO();
+        this.dao = new AsyncTimeEntryDAO();
 
         setTitle(createWindowTitle());
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -68,6 +87,18 @@ public class MainWindow extends JFrame {
         // Always-on-top Handler NACH GUI-Initialisierung
         System.out.println("Initialisiere Always-on-top Handler...");
         this.alwaysOnTopHandler = new AlwaysOnTopHandler(this);
+        alwaysOnTopHandler.setMinimizeToTrayListener(() -> dao.flush().whenComplete((flushed, error) -> {
+            if (error != null) {
+                // Fenster ist bereits versteckt: kein Dialog, die Statuszeile zeigt den Fehler nach dem Wiederherstellen
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Änderungen konnten beim Minimieren nicht gespeichert werden: " + cause.getMessage());
+                updateStatus("Änderungen konnten nicht gespeichert werden");
+                return;
+            }
+            if (maintenance != null) {
+                maintenance.idle();
+            }
+        }));
 
         // Menu-Item Status nach Handler-Initialisierung aktualisieren
         if (alwaysOnTopMenuItem != null) {
@@ -76,6 +107,7 @@ public class MainWindow extends JFrame {
 
         // Daten laden (kann länger dauern)
         System.out.println("Lade Anwendungsdaten...");
+        loadArchivedYears();
         loadTodaysData();
         updateStatistics();
 
@@ -121,6 +153,10 @@ public class MainWindow extends JFrame {
         // Time Table
         timeTable = new EditableTable(dao);
         timeTable.addChangeListener(this::updateStatistics);
+        timeTable.setPersistFailureHandler(() -> {
+            updateStatus("Änderung konnte nicht gespeichert werden - Daten neu geladen");
+            loadTodaysData();
+        });
 
         // Consolidated Table (einfache JTable)
         consolidatedTable = new JTable();
@@ -151,6 +187,13 @@ public class MainWindow extends JFrame {
         netTimeLabel.setForeground(new Color(39, 174, 96));
         breakTimeLabel.setForeground(new Color(230, 126, 34));
         statusLabel.setForeground(Color.GRAY);
+
+        // Fortschrittsanzeige, nur sichtbar während einer Hintergrundaufgabe
+        taskProgressBar = new JProgressBar();
+        taskProgressBar.setStringPainted(true);
+        taskProgressBar.setPreferredSize(new Dimension(160, 16));
+        taskProgressBar.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+        taskProgressBar.setVisible(false);
     }
 
     private void layoutComponents() {
@@ -222,6 +265,7 @@ public class MainWindow extends JFrame {
         // Status Rechts
         JPanel statusPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         statusPanel.setBackground(new Color(250, 250, 250));
+        statusPanel.add(taskProgressBar);
         statusPanel.add(statusLabel);
 
         bottomPanel.add(statsPanel, BorderLayout.WEST);
@@ -307,10 +351,14 @@ public class MainWindow extends JFrame {
         JMenuItem historicalItem = new JMenuItem("Historische Zeiterfassung...");
         historicalItem.addActionListener(e -> showHistoricalView());
 
+        JMenuItem searchItem = new JMenuItem("Einträge suchen...");
+        searchItem.addActionListener(e -> showSearchDialog());
+
         viewMenu.add(alwaysOnTopItem);
         viewMenu.add(opacityItem);
         viewMenu.addSeparator();
         viewMenu.add(historicalItem);
+        viewMenu.add(searchItem);
 
         // Extras-Menü
         JMenu extrasMenu = new JMenu("Extras");
@@ -318,10 +366,34 @@ public class MainWindow extends JFrame {
         JMenuItem exportItem = new JMenuItem("Exportieren...");
         exportItem.addActionListener(e -> exportData());
 
+        JMenuItem importItem = new JMenuItem("Importieren...");
+        importItem.addActionListener(e -> importData());
+
+        JMenuItem rebuildSummaryItem = new JMenuItem("Tagessummen neu berechnen");
+        rebuildSummaryItem.addActionListener(e -> rebuildDailySummary());
+
+        JMenuItem archiveItem = new JMenuItem("Jahr archivieren...");
+        archiveItem.addActionListener(e -> archiveYear());
+
+        JMenuItem syncItem = new JMenuItem("Mit Datei synchronisieren...");
+        syncItem.addActionListener(e -> syncWithFile());
+
+        JMenuItem backupItem = new JMenuItem("Jetzt sichern");
+        backupItem.addActionListener(e -> backupNow());
+
+        JMenuItem maintenanceItem = new JMenuItem("Datenbank warten");
+        maintenanceItem.addActionListener(e -> runMaintenance());
+
         JMenuItem aboutItem = new JMenuItem("Über...");
         aboutItem.addActionListener(e -> showAboutDialog());
 
         extrasMenu.add(exportItem);
+        extrasMenu.add(importItem);
+        extrasMenu.add(syncItem);
+        extrasMenu.add(backupItem);
+        extrasMenu.add(rebuildSummaryItem);
+        extrasMenu.add(maintenanceItem);
+        extrasMenu.add(archiveItem);
         extrasMenu.addSeparator();
         extrasMenu.add(aboutItem);
 
@@ -343,32 +415,47 @@ public class MainWindow extends JFrame {
     }
 
     private void startNewActivity() {
-        // Berechne Startzeit basierend auf vorherigen Einträgen
-        LocalTime startTime = calculateNextStartTime();
+        // Kein zweiter Start, solange die Datenbank noch beschäftigt ist
+        startStopButton.setEnabled(false);
 
-        System.out.println("Berechnete Startzeit für neue Aktivität: " + TimeFormatter.formatTime(startTime));
+        dao.getTimeEntriesByDate(LocalDate.now()).thenCompose(todaysEntries -> {
+            // Berechne Startzeit basierend auf vorherigen Einträgen
+            LocalTime startTime = calculateNextStartTime(todaysEntries);
 
-        // Erstelle neue Aktivität direkt ohne Dialog
-        currentActivity = new TimeEntry(
-                LocalDate.now(),
-                startTime,
-                "" // Leere Beschreibung initial
-        );
+            System.out.println("Berechnete Startzeit für neue Aktivität: " + TimeFormatter.formatTime(startTime));
 
-        System.out.println("Neue Aktivität wird gestartet um " + currentActivity.getStartTimeFormatted());
+            // Erstelle neue Aktivität direkt ohne Dialog
+            currentActivity = new TimeEntry(
+                    LocalDate.now(),
+                    startTime,
+                    "" // Leere Beschreibung initial
+            );
+
+            System.out.println("Neue Aktivität wird gestartet um " + currentActivity.getStartTimeFormatted());
+
+            // In Datenbank speichern
+            return dao.insertTimeEntry(currentActivity);
+        }).whenComplete((success, error) -> {
+            // Auch bei einer Ausnahme den Button wieder freigeben und den Fehler melden
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Fehler beim Starten der Aktivität: " + cause.getMessage());
+            }
+            onActivityStarted(error == null && success);
+        });
+    }
+
+    private void onActivityStarted(boolean success) {
+        startStopButton.setEnabled(true);
 
-        // In Datenbank speichern
-        boolean success = dao.insertTimeEntry(currentActivity);
         if (success) {
             isRunning = true;
             updateStartStopButton();
             updateStatus("Läuft: (neue Aktivität)");
 
-            // Tabelle aktualisieren und neuen Eintrag fokussieren
-            loadTodaysData();
-
-            // Fokus auf Beschreibungsfeld der neuen Zeile setzen
-            SwingUtilities.invokeLater(() -> {
+            // Tabelle aktualisieren und danach den neuen Eintrag fokussieren
+            loadTodaysData().thenRun(() -> {
+                // Fokus auf Beschreibungsfeld der neuen Zeile setzen
                 int lastRow = timeTable.getRowCount() - 1;
                 if (lastRow >= 0) {
                     timeTable.setRowSelectionInterval(lastRow, lastRow);
@@ -382,6 +469,7 @@ public class MainWindow extends JFrame {
 
             System.out.println("Neue Aktivität erfolgreich gestartet");
         } else {
+            currentActivity = null;
             JOptionPane.showMessageDialog(this,
                     "Fehler beim Speichern der neuen Aktivität!",
                     "Datenbankfehler", JOptionPane.ERROR_MESSAGE);
@@ -391,9 +479,7 @@ public class MainWindow extends JFrame {
     /**
      * Berechnet die nächste Startzeit basierend auf dem letzten Eintrag
      */
-    private LocalTime calculateNextStartTime() {
-        List<TimeEntry> todaysEntries = dao.getTimeEntriesByDate(LocalDate.now());
-
+    private LocalTime calculateNextStartTime(List<TimeEntry> todaysEntries) {
         if (todaysEntries.isEmpty()) {
             // Keine Einträge vorhanden - verwende aktuelle Zeit
             return LocalTime.now();
@@ -425,32 +511,43 @@ public class MainWindow extends JFrame {
     private void stopCurrentActivity() {
         if (currentActivity != null && isRunning) {
             // Endzeit setzen
-            currentActivity.stopActivity();
+            TimeEntry activity = currentActivity;
+            activity.stopActivity();
 
             // In Datenbank aktualisieren
-            boolean success = dao.updateTimeEntry(currentActivity);
-            if (success) {
-                System.out.println("Aktivität gestoppt: " + currentActivity.getDescription() +
-                        " (" + currentActivity.getDurationFormatted() + ")");
+            startStopButton.setEnabled(false);
+            dao.updateTimeEntry(activity).whenComplete((success, error) -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    System.err.println("Fehler beim Stoppen der Aktivität: " + cause.getMessage());
+                }
+                onActivityStopped(activity, error == null && success);
+            });
+        }
+    }
 
-                isRunning = false;
-                currentActivity = null;
-                updateStartStopButton();
-                updateStatus("Gestoppt um " + TimeFormatter.formatCurrentTime());
+    private void onActivityStopped(TimeEntry activity, boolean success) {
+        startStopButton.setEnabled(true);
 
-                // Tabelle komplett neu laden für korrekte Anzeige
-                SwingUtilities.invokeLater(() -> {
-                    loadTodaysData();
-                    updateStatistics();
+        if (success) {
+            System.out.println("Aktivität gestoppt: " + activity.getDescription() +
+                    " (" + activity.getDurationFormatted() + ")");
 
-                    // Fokus auf Start-Button beibehalten
-                    startStopButton.requestFocusInWindow();
-                });
-            } else {
-                JOptionPane.showMessageDialog(this,
-                        "Fehler beim Speichern der Aktivität!",
-                        "Datenbankfehler", JOptionPane.ERROR_MESSAGE);
-            }
+            isRunning = false;
+            currentActivity = null;
+            updateStartStopButton();
+            updateStatus("Gestoppt um " + TimeFormatter.formatCurrentTime());
+
+            // Tabelle komplett neu laden für korrekte Anzeige
+            loadTodaysData();
+            updateStatistics();
+
+            // Fokus auf Start-Button beibehalten
+            startStopButton.requestFocusInWindow();
+        } else {
+            JOptionPane.showMessageDialog(this,
+                    "Fehler beim Speichern der Aktivität!",
+                    "Datenbankfehler", JOptionPane.ERROR_MESSAGE);
         }
     }
 
@@ -544,10 +641,18 @@ public class MainWindow extends JFrame {
      * Hebt den Tagesabschluss auf und ermöglicht erneute Bearbeitung
      */
     private void removeDayCompletion() {
-        try {
-            // Lösche konsolidierte Einträge
-            boolean success = dao.deleteConsolidatedEntriesByDate(LocalDate.now());
+        // Lösche konsolidierte Einträge
+        dao.deleteConsolidatedEntriesByDate(LocalDate.now()).whenComplete((success, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Fehler beim Aufheben des Tagesabschlusses: " + cause.getMessage());
+            }
+            onDayCompletionRemoved(error == null && success);
+        });
+    }
 
+    private void onDayCompletionRemoved(boolean success) {
+        try {
             if (success) {
                 isDayCompleted = false;
                 updateCompleteButton();
@@ -581,15 +686,40 @@ public class MainWindow extends JFrame {
     }
 
     private void consolidateEntries() {
-        List<TimeEntry> entries = dao.getTimeEntriesByDate(LocalDate.now());
+        LocalDate today = LocalDate.now();
+        dao.submit(sync -> consolidateDay(sync, today)).whenComplete((consolidated, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Fehler beim Tagesabschluss: " + cause.getMessage());
+            }
+            onEntriesConsolidated(error == null ? consolidated : null);
+        });
+    }
+
+    /**
+     * Ersetzt die konsolidierten Einträge des Tages (läuft auf dem I/O-Thread)
+     *
+     * @return die gespeicherten konsolidierten Einträge oder null bei einem Fehler
+     */
+    private static List<ConsolidatedEntry> consolidateDay(TimeEntryDAO sync, LocalDate date) {
+        List<TimeEntry> entries = sync.getTimeEntriesByDate(date);
         List<ConsolidatedEntry> consolidated = ConsolidatedEntry.consolidateTimeEntries(entries);
 
-        // Alte konsolidierte Einträge löschen
-        dao.deleteConsolidatedEntriesByDate(LocalDate.now());
+        // Alte konsolidierte Einträge ersetzen - atomar, damit kein halber Abschluss entsteht
+        boolean saved = sync.inTransaction(tx -> {
+            sync.deleteConsolidatedEntriesByDate(date);
+            sync.insertConsolidatedEntries(consolidated);
+        });
 
-        // Neue konsolidierte Einträge speichern
-        for (ConsolidatedEntry entry : consolidated) {
-            dao.insertConsolidatedEntry(entry);
+        return saved ? consolidated : null;
+    }
+
+    private void onEntriesConsolidated(List<ConsolidatedEntry> consolidated) {
+        if (consolidated == null) {
+            JOptionPane.showMessageDialog(this,
+                    "Fehler beim Speichern des Tagesabschlusses!",
+                    "Datenbankfehler", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
         // Status auf abgeschlossen setzen
@@ -708,14 +838,18 @@ public class MainWindow extends JFrame {
         }
     }
 
-    private void loadTodaysData() {
+    private CompletableFuture<Void> loadTodaysData() {
+        System.out.println("Lade heutige Zeiteinträge...");
+        LocalDate today = LocalDate.now();
+        return dao.getTimeEntriesByDate(today)
+                .thenAcceptBoth(dao.getConsolidatedEntriesByDate(today), this::showTodaysData);
+    }
+
+    private void showTodaysData(List<TimeEntry> entries, List<ConsolidatedEntry> consolidated) {
         try {
-            System.out.println("Lade heutige Zeiteinträge...");
-            List<TimeEntry> entries = dao.getTimeEntriesByDate(LocalDate.now());
             timeTable.setTimeEntries(entries);
 
             // Prüfe Tagesabschluss-Status
-            List<ConsolidatedEntry> consolidated = dao.getConsolidatedEntriesByDate(LocalDate.now());
             isDayCompleted = !consolidated.isEmpty();
 
             // UI entsprechend aktualisieren
@@ -765,13 +899,13 @@ public class MainWindow extends JFrame {
     }
 
     private void updateStatistics() {
-        long totalMinutes = dao.getTotalWorkMinutesToday() + dao.getTotalBreakMinutesToday();
-        long netMinutes = dao.getTotalWorkMinutesToday();
-        long breakMinutes = dao.getTotalBreakMinutesToday();
+        dao.getDayStatistics(LocalDate.now()).thenAccept(this::showStatistics);
+    }
 
-        totalTimeLabel.setText("Gesamtzeit: " + TimeFormatter.formatDuration(totalMinutes));
-        netTimeLabel.setText("Nettozeit: " + TimeFormatter.formatDuration(netMinutes));
-        breakTimeLabel.setText("Pausen: " + TimeFormatter.formatDuration(breakMinutes));
+    private void showStatistics(DayStatistics statistics) {
+        totalTimeLabel.setText("Gesamtzeit: " + TimeFormatter.formatDuration(statistics.getTotalMinutes()));
+        netTimeLabel.setText("Nettozeit: " + TimeFormatter.formatDuration(statistics.getWorkMinutes()));
+        breakTimeLabel.setText("Pausen: " + TimeFormatter.formatDuration(statistics.getBreakMinutes()));
     }
 
     private void updateStartStopButton() {
@@ -836,6 +970,27 @@ public class MainWindow extends JFrame {
 
         // Aktivitätsüberwachungs-Timer starten
         startActivityMonitorTimer();
+
+        // Tägliche Sicherung im Hintergrund
+        dao.submit(sync -> {
+            BackupService service = new BackupService(DatabaseManager.getInstance());
+            service.start();
+            return service;
+        }).thenAccept(service -> backupService = service);
+
+        // Tägliche Wartung, sobald die Datenbank eine Weile unverändert ist
+        dao.submit(sync -> {
+            DatabaseMaintenance service = new DatabaseMaintenance(DatabaseManager.getInstance());
+            service.start();
+            return service;
+        }).thenAccept(service -> maintenance = service);
+
+        // Im Journal-Modus: offene Ereignisse im Hintergrund nach time_entries verdichten
+        dao.submit(sync -> {
+            JournalCompactor service = new JournalCompactor(DatabaseManager.getInstance());
+            service.start();
+            return service;
+        }).thenAccept(service -> journalCompactor = service);
     }
 
     /**
@@ -938,14 +1093,24 @@ public class MainWindow extends JFrame {
         });
 
         // Aktivität automatisch beenden (auf genau 2 Stunden begrenzen)
-        LocalTime endTime = currentActivity.getStartTime().plusMinutes(120);
-        currentActivity.setEndTime(endTime);
+        TimeEntry activity = currentActivity;
+        LocalTime endTime = activity.getStartTime().plusMinutes(120);
+        activity.setEndTime(endTime);
 
         // In Datenbank speichern
-        boolean success = dao.updateTimeEntry(currentActivity);
+        dao.updateTimeEntry(activity).whenComplete((success, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Fehler beim automatischen Beenden der Aktivität: " + cause.getMessage());
+            }
+            onActivityAutoStopped(activity, error == null && success);
+        });
+    }
+
+    private void onActivityAutoStopped(TimeEntry activity, boolean success) {
         if (success) {
             System.out.println("Aktivität automatisch nach 2 Stunden beendet: " +
-                    currentActivity.getDescription());
+                    activity.getDescription());
 
             // Prüfe ob eine neue Aktivität gestartet werden soll
             offerNewActivity();
@@ -1016,45 +1181,413 @@ public class MainWindow extends JFrame {
     }
 
     private void exportData() {
+        // Zeitraum und Format wählen, Standard: laufendes Jahr als CSV
+        LocalDate today = LocalDate.now();
+        JSpinner fromSpinner = createDateSpinner(today.withDayOfYear(1));
+        JSpinner toSpinner = createDateSpinner(today);
+        ExportSink[] sinks = {new CsvExportSink(), new JsonLinesExportSink()};
+        JComboBox<String> formatBox = new JComboBox<>();
+        for (ExportSink sink : sinks) {
+            formatBox.addItem(sink.getDisplayName());
+        }
+
+        JPanel rangePanel = new JPanel(new GridLayout(3, 2, 5, 5));
+        rangePanel.add(new JLabel("Von:"));
+        rangePanel.add(fromSpinner);
+        rangePanel.add(new JLabel("Bis:"));
+        rangePanel.add(toSpinner);
+        rangePanel.add(new JLabel("Format:"));
+        rangePanel.add(formatBox);
+
+        if (JOptionPane.showConfirmDialog(this, rangePanel, "Daten exportieren",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        LocalDate from = toLocalDate(fromSpinner);
+        LocalDate to = toLocalDate(toSpinner);
+        if (from.isAfter(to)) {
+            JOptionPane.showMessageDialog(this, "Das Startdatum liegt nach dem Enddatum.",
+                    "Export", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        ExportSink sink = sinks[formatBox.getSelectedIndex()];
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Daten exportieren");
-        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV-Dateien", "csv"));
-        fileChooser.setSelectedFile(new java.io.File("zeiterfassung_" + LocalDate.now() + ".csv"));
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                sink.getDisplayName(), sink.getFileExtension()));
+        fileChooser.setSelectedFile(new java.io.File(
+                "zeiterfassung_" + from + "_bis_" + to + "." + sink.getFileExtension()));
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try {
-                exportToCSV(fileChooser.getSelectedFile());
+            java.io.File file = fileChooser.getSelectedFile();
+
+            // Verzögerte Änderungen zuerst speichern, dann auf eigenem Thread mit eigener Leseverbindung
+            // exportieren, damit der Datenbank-Thread währenddessen frei bleibt
+            dao.flush().whenComplete((flushed, error) -> {
+                if (error == null) {
+                    new ExportWorker(from, to, sink, file.toPath()).execute();
+                    return;
+                }
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Export abgebrochen, Änderungen konnten nicht gespeichert werden: " + cause.getMessage());
                 JOptionPane.showMessageDialog(this,
-                        "Daten erfolgreich exportiert!",
+                        "Offene Änderungen konnten nicht gespeichert werden, der Export wurde nicht gestartet:\n" +
+                                cause.getMessage(),
+                        "Export-Fehler", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    private JSpinner createDateSpinner(LocalDate date) {
+        JSpinner spinner = new JSpinner(new SpinnerDateModel());
+        spinner.setEditor(new JSpinner.DateEditor(spinner, "dd.MM.yyyy"));
+        spinner.setValue(Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+        return spinner;
+    }
+
+    private static LocalDate toLocalDate(JSpinner spinner) {
+        return ((Date) spinner.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * Export im Hintergrund mit Fortschrittsanzeige in der Statusleiste
+     */
+    private class ExportWorker extends SwingWorker<Long, Integer> {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final ExportSink sink;
+        private final java.nio.file.Path target;
+
+        ExportWorker(LocalDate from, LocalDate to, ExportSink sink, java.nio.file.Path target) {
+            this.from = from;
+            this.to = to;
+            this.sink = sink;
+            this.target = target;
+
+            taskProgressBar.setValue(0);
+            taskProgressBar.setString("Export...");
+            taskProgressBar.setVisible(true);
+        }
+
+        @Override
+        protected Long doInBackground() throws Exception {
+            return new TimeEntryExporter(new TimeEntryDAO()).export(from, to, sink, target,
+                    (exported, total) -> publish((int) (exported * 100 / Math.max(total, 1))));
+        }
+
+        @Override
+        protected void process(List<Integer> percentages) {
+            int percent = percentages.get(percentages.size() - 1);
+            taskProgressBar.setValue(percent);
+            taskProgressBar.setString("Export " + percent + "%");
+        }
+
+        @Override
+        protected void done() {
+            taskProgressBar.setVisible(false);
+            try {
+                long exported = get();
+                JOptionPane.showMessageDialog(MainWindow.this,
+                        "Daten erfolgreich exportiert!\n" + exported + " Einträge",
                         "Export erfolgreich", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception e) {
-                JOptionPane.showMessageDialog(this,
-                        "Fehler beim Exportieren: " + e.getMessage(),
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Fehler beim Exportieren: " + cause.getMessage());
+                JOptionPane.showMessageDialog(MainWindow.this,
+                        "Fehler beim Exportieren: " + cause.getMessage(),
                         "Export-Fehler", JOptionPane.ERROR_MESSAGE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
-    private void exportToCSV(java.io.File file) throws java.io.IOException {
-        try (java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(file))) {
-            // Header
-            writer.println("Datum,Startzeit,Endzeit,Dauer,Beschreibung,Pause");
-
-            // Daten
-            List<TimeEntry> entries = dao.getTimeEntriesByDate(LocalDate.now());
-            for (TimeEntry entry : entries) {
-                writer.printf("%s,%s,%s,%s,\"%s\",%s%n",
-                        TimeFormatter.formatForExport(entry.getDate()),
-                        TimeFormatter.formatForExport(entry.getStartTime()),
-                        entry.getEndTime() != null ? TimeFormatter.formatForExport(entry.getEndTime()) : "",
-                        entry.getDurationFormatted(),
-                        entry.getDescription().replace("\"", "\"\""), // CSV-Escaping
-                        entry.isBreak() ? "Ja" : "Nein"
-                );
+    private void importData() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Daten importieren");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV-Dateien", "csv"));
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            java.nio.file.Path file = fileChooser.getSelectedFile().toPath();
+
+            // Verzögerte Änderungen zuerst speichern, damit die Überschneidungsprüfung sie sieht
+            dao.flush().whenComplete((flushed, error) -> {
+                // Verworfene Änderungen (flushed == false) meldet bereits der Write-Behind-Fehlerhandler
+                if (error == null) {
+                    new ImportWorker(file).execute();
+                    return;
+                }
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Import abgebrochen, Änderungen konnten nicht gespeichert werden: " + cause.getMessage());
+                JOptionPane.showMessageDialog(this,
+                        "Offene Änderungen konnten nicht gespeichert werden, der Import wurde nicht gestartet:\n" +
+                                cause.getMessage(),
+                        "Import-Fehler", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    /**
+     * Import im Hintergrund mit Fortschrittsanzeige in der Statusleiste
+     */
+    private class ImportWorker extends SwingWorker<CsvTimeEntryImporter.ImportResult, Integer> {
+        private final java.nio.file.Path file;
+
+        ImportWorker(java.nio.file.Path file) {
+            this.file = file;
+
+            taskProgressBar.setValue(0);
+            taskProgressBar.setString("Import...");
+            taskProgressBar.setVisible(true);
+        }
+
+        @Override
+        protected CsvTimeEntryImporter.ImportResult doInBackground() throws Exception {
+            return new CsvTimeEntryImporter(new TimeEntryDAO()).importFile(file,
+                    (parsed, total) -> publish((int) (parsed * 100 / Math.max(total, 1))));
+        }
+
+        @Override
+        protected void process(List<Integer> percentages) {
+            int percent = percentages.get(percentages.size() - 1);
+            taskProgressBar.setValue(percent);
+            taskProgressBar.setString("Import " + percent + "%");
+        }
+
+        @Override
+        protected void done() {
+            taskProgressBar.setVisible(false);
+            try {
+                CsvTimeEntryImporter.ImportResult result = get();
+                if (result.isSuccessful()) {
+                    JOptionPane.showMessageDialog(MainWindow.this,
+                            result.getImportedCount() + " Einträge importiert.",
+                            "Import erfolgreich", JOptionPane.INFORMATION_MESSAGE);
+                    loadTodaysData();
+                    updateStatistics();
+                } else {
+                    JOptionPane.showMessageDialog(MainWindow.this,
+                            "Es wurde nichts importiert:\n" + String.join("\n", result.getErrors()),
+                            "Import-Fehler", JOptionPane.ERROR_MESSAGE);
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Fehler beim Importieren: " + cause.getMessage());
+                JOptionPane.showMessageDialog(MainWindow.this,
+                        "Fehler beim Importieren: " + cause.getMessage(),
+                        "Import-Fehler", JOptionPane.ERROR_MESSAGE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Gleicht die Einträge mit einer anderen Zeiterfassungsdatei ab, z.B. auf einem Netzlaufwerk oder USB-Stick.
+     * Eine noch nicht vorhandene Datei wird angelegt.
+     */
+    private void syncWithFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Mit Datei synchronisieren");
+        fileChooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("Datenbankdateien", "db"));
+
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            java.nio.file.Path file = fileChooser.getSelectedFile().toPath();
+            updateStatus("Synchronisiere mit " + file.getFileName() + "...");
+
+            // Verzögerte Änderungen zuerst speichern, damit sie mit übertragen werden
+            dao.flush().whenComplete((flushed, error) -> {
+                if (error == null) {
+                    new SyncWorker(file).execute();
+                    return;
+                }
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Synchronisation abgebrochen, Änderungen konnten nicht gespeichert werden: " +
+                        cause.getMessage());
+                updateStatus("Synchronisation fehlgeschlagen");
+                JOptionPane.showMessageDialog(this,
+                        "Offene Änderungen konnten nicht gespeichert werden, die Synchronisation wurde nicht gestartet:\n" +
+                                cause.getMessage(),
+                        "Synchronisation", JOptionPane.ERROR_MESSAGE);
+            });
+        }
+    }
+
+    private class SyncWorker extends SwingWorker<DatabaseSync.SyncResult, Void> {
+        private final java.nio.file.Path file;
+
+        SyncWorker(java.nio.file.Path file) {
+            this.file = file;
+        }
+
+        @Override
+        protected DatabaseSync.SyncResult doInBackground() throws Exception {
+            return new DatabaseSync(DatabaseManager.getInstance()).syncWith(file);
+        }
+
+        @Override
+        protected void done() {
+            try {
+                DatabaseSync.SyncResult result = get();
+                updateStatus("Synchronisiert: " + result.getReceived() + " Änderungen übernommen, " +
+                        result.getSent() + " übertragen");
+                if (result.getReceived() > 0) {
+                    loadTodaysData();
+                    updateStatistics();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                System.err.println("Fehler beim Synchronisieren: " + cause.getMessage());
+                updateStatus("Synchronisation fehlgeschlagen");
+                JOptionPane.showMessageDialog(MainWindow.this,
+                        "Fehler beim Synchronisieren: " + cause.getMessage(),
+                        "Synchronisation", JOptionPane.ERROR_MESSAGE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
 
+    /**
+     * Sichert die Datenbank sofort; die automatische Sicherung läuft davon unabhängig einmal täglich
+     */
+    private void backupNow() {
+        if (backupService == null) {
+            // Der Dienst wird beim Start auf dem I/O-Thread angelegt
+            JOptionPane.showMessageDialog(this,
+                    "Die Sicherung ist noch nicht bereit. Bitte in einigen Sekunden erneut versuchen.",
+                    "Sicherung", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        updateStatus("Sicherung läuft...");
+        // Verzögerte Änderungen zuerst speichern, damit sie in der Sicherung enthalten sind
+        dao.flush().thenCompose(ignored -> backupService.backupAsync()).whenComplete((file, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (error == null) {
+                        updateStatus("Gesichert: " + file.getFileName());
+                    } else {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        System.err.println("Fehler beim Sichern: " + cause.getMessage());
+                        updateStatus("Sicherung fehlgeschlagen");
+                        JOptionPane.showMessageDialog(this,
+                                "Fehler beim Sichern: " + cause.getMessage(),
+                                "Sicherung", JOptionPane.ERROR_MESSAGE);
+                    }
+                }));
+    }
+
+    /**
+     * Wartet die Datenbank sofort (Statistiken, freie Seiten, WAL-Checkpoint)
+     */
+    private void runMaintenance() {
+        if (maintenance == null) return;
+
+        updateStatus("Datenbankwartung läuft...");
+        maintenance.runAsync().whenComplete((reclaimed, error) ->
+                SwingUtilities.invokeLater(() -> {
+                    if (error == null) {
+                        updateStatus("Datenbank gewartet: " + reclaimed / 1024 + " KB freigegeben");
+                    } else {
+                        System.err.println("Fehler bei der Datenbankwartung: " + error.getMessage());
+                        updateStatus("Datenbankwartung fehlgeschlagen");
+                        JOptionPane.showMessageDialog(this,
+                                "Fehler bei der Datenbankwartung: " + error.getMessage(),
+                                "Datenbank warten", JOptionPane.ERROR_MESSAGE);
+                    }
+                }));
+    }
+
+    /**
+     * Berechnet die Tabelle daily_summary aus allen Einträgen neu
+     */
+    private void rebuildDailySummary() {
+        updateStatus("Tagessummen werden neu berechnet...");
+        dao.submit(TimeEntryDAO::rebuildDailySummary).whenComplete((success, error) -> {
+            if (error == null && success) {
+                updateStatus("Tagessummen neu berechnet");
+                updateStatistics();
+            } else {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    System.err.println("Fehler beim Neuberechnen der Tagessummen: " + cause.getMessage());
+                }
+                updateStatus("Neuberechnung der Tagessummen fehlgeschlagen");
+                JOptionPane.showMessageDialog(this,
+                        "Fehler beim Neuberechnen der Tagessummen",
+                        "Fehler", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    private void loadArchivedYears() {
+        dao.submit(TimeEntryDAO::getArchivedYears).whenComplete((years, error) -> {
+            if (error != null) {
+                System.err.println("Archivierte Jahre konnten nicht geladen werden: " + error.getMessage());
+                return;
+            }
+            timeTable.setArchivedYears(years);
+        });
+    }
+
+    /**
+     * Lagert ein abgeschlossenes Jahr in eine eigene Archivdatei aus
+     */
+    private void archiveYear() {
+        dao.submit(TimeEntryDAO::getArchivableYears).whenComplete((years, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                System.err.println("Archivierbare Jahre konnten nicht ermittelt werden: " + cause.getMessage());
+                JOptionPane.showMessageDialog(this,
+                        "Archivierbare Jahre konnten nicht ermittelt werden:\n" + cause.getMessage(),
+                        "Fehler", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (years.isEmpty()) {
+                JOptionPane.showMessageDialog(this,
+                        "Es gibt keine abgeschlossenen Jahre, die archiviert werden können.",
+                        "Jahr archivieren", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            Integer year = (Integer) JOptionPane.showInputDialog(this,
+                    "Die Einträge des Jahres werden in eine eigene Datei verschoben\n" +
+                            "und können danach nur noch angesehen werden.",
+                    "Jahr archivieren", JOptionPane.QUESTION_MESSAGE, null,
+                    years.toArray(), years.get(years.size() - 1));
+            if (year == null) return;
+
+            updateStatus("Jahr " + year + " wird archiviert...");
+            dao.submit(sync -> sync.archiveYear(year)).whenComplete((success, archiveError) -> {
+                if (archiveError == null && success) {
+                    updateStatus("Jahr " + year + " archiviert");
+                    // Einträge des Jahres sind ab jetzt schreibgeschützt
+                    loadArchivedYears();
+                    // Platz der ausgelagerten Einträge schrittweise zurückgeben statt per VACUUM
+                    if (maintenance != null) {
+                        maintenance.runAsync().whenComplete((reclaimed, maintenanceError) -> {
+                            if (maintenanceError != null) {
+                                System.err.println("Wartung nach dem Archivieren fehlgeschlagen: " +
+                                        maintenanceError.getMessage());
+                            }
+                        });
+                    }
+                } else {
+                    if (archiveError != null) {
+                        Throwable cause = archiveError.getCause() != null ? archiveError.getCause() : archiveError;
+                        System.err.println("Fehler beim Archivieren des Jahres " + year + ": " + cause.getMessage());
+                    }
+                    updateStatus("Archivieren des Jahres " + year + " fehlgeschlagen");
+                    JOptionPane.showMessageDialog(this,
+                            "Fehler beim Archivieren des Jahres " + year,
+                            "Fehler", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        });
+    }
+
     /**
      * Zeigt die historische Zeiterfassungsansicht
      */
@@ -1079,6 +1612,13 @@ public class MainWindow extends JFrame {
         }
     }
 
+    /**
+     * Volltextsuche über alle Einträge; Treffer öffnen die historische Ansicht des Tages
+     */
+    private void showSearchDialog() {
+        new SearchDialog(this, dao).setVisible(true);
+    }
+
     private void showAboutDialog() {
         String message = """
             <html>
@@ -1126,7 +1666,17 @@ public class MainWindow extends JFrame {
             alwaysOnTopHandler.cleanup();
         }
 
-        // Datenbank schließen
+        // Ausstehende und verzögerte Schreibzugriffe abwarten, dann Datenbank schließen
+        dao.shutdown();
+        if (journalCompactor != null) {
+            journalCompactor.shutdown();
+        }
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+        if (backupService != null) {
+            backupService.shutdown();
+        }
         DatabaseManager.getInstance().close();
 
         System.exit(0);
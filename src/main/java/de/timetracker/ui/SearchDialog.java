@@ -0,0 +1,178 @@
+package de.timetracker.ui;
+
+import de.timetracker.database.AsyncTimeEntryDAO;
+import de.timetracker.model.TimeEntry;
+import de.timetracker.utils.TimeFormatter;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dialog für die Volltextsuche in allen Beschreibungen; ein Treffer öffnet den Tag in der historischen Ansicht
+ */
+public class SearchDialog extends JDialog {
+    private static final int MAX_RESULTS = 200;
+    private static final String[] RANGES = {"Gesamter Zeitraum", "Dieses Jahr", "Letzte 12 Monate"};
+
+    private final Frame owner;
+    private final AsyncTimeEntryDAO dao;
+    private JTextField queryField;
+    private JComboBox<String> rangeComboBox;
+    private JButton searchButton;
+    private JTable resultTable;
+    private JLabel statusLabel;
+    private List<TimeEntry> results = new ArrayList<>();
+    private int searchSequence = 0;
+
+    public SearchDialog(Frame owner, AsyncTimeEntryDAO dao) {
+        super(owner, "Einträge suchen", true);
+        this.owner = owner;
+        this.dao = dao;
+
+        setSize(700, 500);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        initializeComponents();
+        layoutComponents();
+    }
+
+    private void initializeComponents() {
+        queryField = new JTextField(30);
+        queryField.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        queryField.addActionListener(e -> search());
+
+        rangeComboBox = new JComboBox<>(RANGES);
+
+        searchButton = new JButton("Suchen");
+        searchButton.addActionListener(e -> search());
+
+        resultTable = new JTable();
+        resultTable.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        resultTable.setRowHeight(25);
+        resultTable.setGridColor(new Color(230, 230, 230));
+        resultTable.setShowGrid(true);
+        resultTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelectedDay();
+                }
+            }
+        });
+        resultTable.getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "openDay");
+        resultTable.getActionMap().put("openDay", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                openSelectedDay();
+            }
+        });
+        updateResultTable();
+
+        statusLabel = new JLabel("Suchbegriff eingeben, Doppelklick auf einen Treffer öffnet den Tag");
+        statusLabel.setFont(new Font(Font.SANS_SERIF, Font.ITALIC, 11));
+        statusLabel.setForeground(Color.GRAY);
+    }
+
+    private void layoutComponents() {
+        setLayout(new BorderLayout(5, 5));
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        topPanel.setBackground(new Color(245, 245, 245));
+        topPanel.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY));
+
+        JLabel queryLabel = new JLabel("Suche:");
+        queryLabel.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 12));
+        topPanel.add(queryLabel);
+        topPanel.add(queryField);
+        topPanel.add(rangeComboBox);
+        topPanel.add(searchButton);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(new JScrollPane(resultTable), BorderLayout.CENTER);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.setBackground(new Color(250, 250, 250));
+        bottomPanel.setBorder(BorderFactory.createCompoundBorder(
+                BorderFactory.createMatteBorder(1, 0, 0, 0, Color.LIGHT_GRAY),
+                BorderFactory.createEmptyBorder(8, 15, 8, 15)
+        ));
+        bottomPanel.add(statusLabel, BorderLayout.WEST);
+
+        add(bottomPanel, BorderLayout.SOUTH);
+    }
+
+    private void search() {
+        String query = queryField.getText().trim();
+        if (query.isEmpty()) return;
+
+        LocalDate today = LocalDate.now();
+        LocalDate from = switch (rangeComboBox.getSelectedIndex()) {
+            case 1 -> today.withDayOfYear(1);
+            case 2 -> today.minusMonths(12);
+            default -> LocalDate.MIN;
+        };
+
+        // Antworten einer inzwischen überholten Suche verwerfen
+        int sequence = ++searchSequence;
+        long started = System.nanoTime();
+        statusLabel.setText("Suche läuft...");
+
+        dao.searchEntries(query, from, LocalDate.MAX, MAX_RESULTS).thenAccept(entries -> {
+            if (sequence != searchSequence) return;
+
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            results = entries;
+            updateResultTable();
+            statusLabel.setText(entries.size() + (entries.size() == MAX_RESULTS ? "+" : "") +
+                    " Treffer in " + millis + " ms");
+        });
+    }
+
+    private void updateResultTable() {
+        String[] columnNames = {"Datum", "Startzeit", "Endzeit", "Dauer", "Beschreibung"};
+        Object[][] data = new Object[results.size()][5];
+
+        for (int i = 0; i < results.size(); i++) {
+            TimeEntry entry = results.get(i);
+            data[i][0] = TimeFormatter.formatDate(entry.getDate());
+            data[i][1] = entry.getStartTimeFormatted();
+            data[i][2] = entry.getEndTimeFormatted();
+            data[i][3] = entry.getDurationFormatted();
+            data[i][4] = entry.getDescription();
+        }
+
+        resultTable.setModel(new DefaultTableModel(data, columnNames) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false; // Read-only
+            }
+        });
+
+        if (resultTable.getColumnModel().getColumnCount() > 0) {
+            resultTable.getColumnModel().getColumn(0).setPreferredWidth(90);
+            resultTable.getColumnModel().getColumn(1).setPreferredWidth(70);
+            resultTable.getColumnModel().getColumn(2).setPreferredWidth(70);
+            resultTable.getColumnModel().getColumn(3).setPreferredWidth(70);
+            resultTable.getColumnModel().getColumn(4).setPreferredWidth(300);
+        }
+    }
+
+    private void openSelectedDay() {
+        int row = resultTable.getSelectedRow();
+        if (row < 0 || row >= results.size()) return;
+
+        HistoricalViewDialog dialog = new HistoricalViewDialog(owner, dao);
+        dialog.setDate(results.get(row).getDate());
+        dialog.setVisible(true);
+    }
+}
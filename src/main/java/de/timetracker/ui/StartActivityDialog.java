@@ -2,7 +2,7 @@ package de.timetracker.ui;
 
 import de.timetracker.ui.components.AutoCompleteTextField;
 import de.timetracker.utils.TimeFormatter;
-import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.database.AsyncTimeEntryDAO;
 
 import javax.swing.*;
 import java.awt.*;
@@ -18,13 +18,13 @@ public class StartActivityDialog extends JDialog {
     private JButton okButton;
     private JButton cancelButton;
     private boolean approved = false;
-    private final TimeEntryDAO dao;
+    private final AsyncTimeEntryDAO dao;
 
-    public StartActivityDialog(Frame parent, TimeEntryDAO dao) {
+    public StartActivityDialog(Frame parent, AsyncTimeEntryDAO dao) {
         this(parent, dao, LocalTime.now());
     }
 
-    public StartActivityDialog(Frame parent, TimeEntryDAO dao, LocalTime startTime) {
+    public StartActivityDialog(Frame parent, AsyncTimeEntryDAO dao, LocalTime startTime) {
         super(parent, "Neue Aktivität starten", true);
         this.dao = dao;
 
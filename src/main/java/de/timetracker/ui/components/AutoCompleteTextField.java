@@ -1,7 +1,7 @@
 package de.timetracker.ui.components;
 
 import de.timetracker.model.ActivityDescription;
-import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.database.AsyncTimeEntryDAO;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
@@ -16,14 +16,14 @@ import java.util.ArrayList;
  * Basiert auf JTextField statt JComboBox um Fokus-Probleme zu vermeiden
  */
 public class AutoCompleteTextField extends JTextField {
-    private final TimeEntryDAO dao;
+    private final AsyncTimeEntryDAO dao;
     private List<ActivityDescription> allSuggestions;
     private JPopupMenu suggestionPopup;
     private boolean isUpdating = false;
     private ActionListener enterListener;
     private int maxSuggestions = 5; // Anzahl der maximal angezeigten Suggestions
 
-    public AutoCompleteTextField(TimeEntryDAO dao) {
+    public AutoCompleteTextField(AsyncTimeEntryDAO dao) {
         super();
         this.dao = dao;
         this.allSuggestions = new ArrayList<>();
@@ -176,26 +176,27 @@ public class AutoCompleteTextField extends JTextField {
     }
 
     private void loadSuggestions() {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                System.out.println("Lade AutoComplete-Suggestions...");
-                allSuggestions = dao.getActivityDescriptions(50);
-                System.out.println("AutoComplete-Suggestions geladen: " + allSuggestions.size() + " Einträge");
-            } catch (Exception e) {
-                System.err.println("Fehler beim Laden der Suggestions: " + e.getMessage());
+        System.out.println("Lade AutoComplete-Suggestions...");
+        // Laden im Hintergrund, Ergebnis kommt auf dem EDT an
+        dao.getActivityDescriptions(50).whenComplete((suggestions, error) -> {
+            if (error != null) {
+                System.err.println("Fehler beim Laden der Suggestions: " + error.getMessage());
                 allSuggestions = new ArrayList<>();
+                return;
             }
+            allSuggestions = suggestions;
+            System.out.println("AutoComplete-Suggestions geladen: " + allSuggestions.size() + " Einträge");
         });
     }
 
     public void refreshSuggestions() {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                System.out.println("Aktualisiere AutoComplete-Suggestions...");
-                allSuggestions = dao.getActivityDescriptions(50);
-            } catch (Exception e) {
-                System.err.println("Fehler beim Aktualisieren der Suggestions: " + e.getMessage());
+        System.out.println("Aktualisiere AutoComplete-Suggestions...");
+        dao.getActivityDescriptions(50).whenComplete((suggestions, error) -> {
+            if (error != null) {
+                System.err.println("Fehler beim Aktualisieren der Suggestions: " + error.getMessage());
+                return;
             }
+            allSuggestions = suggestions;
         });
     }
 
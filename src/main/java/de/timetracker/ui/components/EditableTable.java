@@ -3,25 +3,31 @@ package de.timetracker.ui.components;
 import de.timetracker.model.TimeEntry;
 import de.timetracker.ui.MainWindow;
 import de.timetracker.utils.TimeFormatter;
-import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.database.AsyncTimeEntryDAO;
+import de.timetracker.database.PendingWrites;
 
 import javax.swing.*;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableColumn;
 import java.awt.*;
+import java.sql.Savepoint;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Editierbare Tabelle für Zeiteinträge mit automatischer 2-Stunden-Blockierung und Pausenverwaltung
  */
 public class EditableTable extends JTable {
     private final TimeEntryTableModel tableModel;
-    private final TimeEntryDAO dao;
+    private final AsyncTimeEntryDAO dao;
     private final List<TimeEntryChangeListener> changeListeners;
+    private Runnable persistFailureHandler;
+    private PendingWrites pendingWrites; // Schreibzugriffe der laufenden Bearbeitung
     private boolean isDayCompleted = false; // Flag für Tagesabschluss-Status
     private boolean isStartButtonActive = true; // Flag für Start-Button-Status
+    private Set<Integer> archivedYears = Set.of(); // Einträge dieser Jahre sind schreibgeschützt
 
     // Spalten-Indizes
     public static final int COL_START_TIME = 0;
@@ -33,10 +39,11 @@ public class EditableTable extends JTable {
     // Konstanten
     private static final int MAX_DURATION_MINUTES = 120; // 2 Stunden
 
-    public EditableTable(TimeEntryDAO dao) {
+    public EditableTable(AsyncTimeEntryDAO dao) {
         this.dao = dao;
         this.tableModel = new TimeEntryTableModel();
         this.changeListeners = new ArrayList<>();
+        dao.setWriteBehindFailureHandler(() -> handlePersistFailure("Verzögert gespeicherte Änderungen"));
 
         setModel(tableModel);
         initializeTable();
@@ -166,6 +173,11 @@ public class EditableTable extends JTable {
 
             TimeEntry entry = tableModel.getTimeEntry(row);
 
+            if (isArchived(entry)) {
+                showArchivedMessage(entry);
+                return;
+            }
+
             // Prüfe ob Eintrag laufend ist - laufende Einträge können NICHT gelöscht werden
             if (entry.getEndTime() == null) {
                 JOptionPane.showMessageDialog(this,
@@ -174,16 +186,18 @@ public class EditableTable extends JTable {
                 return;
             }
 
-            // Eintrag aus Datenbank löschen
-            if (entry.getId() > 0) {
-                dao.deleteTimeEntry(entry.getId());
-            }
+            // Löschen und alle Folgeanpassungen atomar in einer Transaktion
+            PendingWrites writes = collectWrites(() -> {
+                // Eintrag aus Datenbank löschen
+                deleteEntryInDatabase(entry);
 
-            // Eintrag aus Model entfernen
-            tableModel.removeTimeEntry(row);
+                // Eintrag aus Model entfernen
+                tableModel.removeTimeEntry(row);
 
-            // Nach dem Löschen: Zeiten anpassen und 2-Stunden-Regel durchsetzen
-            adjustTimesAfterDeletion(row);
+                // Nach dem Löschen: Zeiten anpassen und 2-Stunden-Regel durchsetzen
+                adjustTimesAfterDeletion(row);
+            });
+            saveLater(writes);
 
             notifyChangeListeners();
         }
@@ -204,6 +218,26 @@ public class EditableTable extends JTable {
         return isDayCompleted;
     }
 
+    /**
+     * Setzt die archivierten Jahre (siehe TimeEntryDAO.getArchivedYears); deren Einträge sind nicht editierbar
+     */
+    public void setArchivedYears(Set<Integer> archivedYears) {
+        this.archivedYears = archivedYears;
+        tableModel.fireTableDataChanged();
+    }
+
+    private boolean isArchived(TimeEntry entry) {
+        return archivedYears.contains(entry.getDate().getYear());
+    }
+
+    private void showArchivedMessage(TimeEntry entry) {
+        JOptionPane.showMessageDialog(this,
+                "Das Jahr " + entry.getDate().getYear() + " ist archiviert.\n" +
+                        "Archivierte Einträge können nicht mehr geändert oder gelöscht werden.",
+                "Eintrag archiviert",
+                JOptionPane.WARNING_MESSAGE);
+    }
+
     /**
      * Passt Zeiten nach dem Löschen einer Zeile an und fügt bei Bedarf Pausen ein
      */
@@ -288,6 +322,7 @@ public class EditableTable extends JTable {
         LocalTime currentTime = startTime;
         long remainingMinutes = gapMinutes;
         int insertIndex = insertPosition;
+        List<TimeEntry> pauseEntries = new ArrayList<>();
 
         while (remainingMinutes > 0) {
             // Berechne Pause-Dauer (maximal 2 Stunden)
@@ -301,27 +336,25 @@ public class EditableTable extends JTable {
             pauseEntry.setEndTime(pauseEndTime);
             pauseEntry.setDescription("Pause (automatisch eingefügt)");
             pauseEntry.setBreak(true);
-
-            // In Datenbank speichern
-            boolean success = dao.insertTimeEntry(pauseEntry);
-            if (success) {
-                // In Model einfügen
-                entries.add(insertIndex, pauseEntry);
-                insertIndex++;
-
-                System.out.println("Pause eingefügt: " +
-                        TimeFormatter.formatTime(currentTime) + " - " +
-                        TimeFormatter.formatTime(pauseEndTime) +
-                        " (" + pauseDuration + " Minuten)");
-            } else {
-                System.err.println("Fehler beim Speichern der Pause-Zeile");
-                break;
-            }
+            pauseEntries.add(pauseEntry);
 
             currentTime = pauseEndTime;
             remainingMinutes -= pauseDuration;
         }
 
+        // Alle Pausen gemeinsam in einer Transaktion speichern
+        persistEntries(pauseEntries);
+        for (TimeEntry pauseEntry : pauseEntries) {
+            // In Model einfügen
+            entries.add(insertIndex, pauseEntry);
+            insertIndex++;
+
+            System.out.println("Pause eingefügt: " +
+                    pauseEntry.getStartTimeFormatted() + " - " +
+                    pauseEntry.getEndTimeFormatted() +
+                    " (" + pauseEntry.getDurationMinutes() + " Minuten)");
+        }
+
         // Aktualisiere die Position der ursprünglichen Zeile
         if (insertIndex < entries.size()) {
             TimeEntry originalEntry = entries.get(insertIndex);
@@ -419,7 +452,7 @@ public class EditableTable extends JTable {
             pauseEntry.setBreak(true);
 
             // In Datenbank speichern
-            dao.insertTimeEntry(pauseEntry);
+            updateEntryInDatabase(pauseEntry);
 
             // In Model einfügen
             entries.add(entryIndex + 1, pauseEntry);
@@ -437,6 +470,7 @@ public class EditableTable extends JTable {
      */
     private void adjustSubsequentTimesFromIndex(int startIndex) {
         List<TimeEntry> entries = tableModel.getTimeEntries();
+        List<TimeEntry> changedEntries = new ArrayList<>();
 
         for (int i = startIndex; i < entries.size(); i++) {
             if (i == 0) continue;
@@ -454,26 +488,87 @@ public class EditableTable extends JTable {
 
                 currentEntry.setStartTime(newStartTime);
                 currentEntry.setEndTime(newEndTime);
-                updateEntryInDatabase(currentEntry);
+                changedEntries.add(currentEntry);
 
                 System.out.println("Nachfolgende Zeile " + (i + 1) + " angepasst: " +
                         currentEntry.getStartTimeFormatted() + " - " +
                         currentEntry.getEndTimeFormatted());
             }
         }
+
+        persistEntries(changedEntries);
     }
 
     private void updateEntryInDatabase(TimeEntry entry) {
-        if (entry.getId() > 0) {
-            boolean success = dao.updateTimeEntry(entry);
-            if (!success) {
-                System.err.println("Fehler beim Speichern von Eintrag " + entry.getId());
-            }
+        persistEntries(List.of(entry));
+    }
+
+    private void deleteEntryInDatabase(TimeEntry entry) {
+        if (pendingWrites != null) {
+            pendingWrites.delete(entry);
+        } else {
+            PendingWrites writes = new PendingWrites();
+            writes.delete(entry);
+            saveLater(writes);
+        }
+    }
+
+    /**
+     * Speichert mehrere geänderte Einträge gesammelt mit einem Commit statt einem pro Zeile.
+     * Innerhalb von {@link #collectWrites} werden sie nur vorgemerkt.
+     */
+    private void persistEntries(List<TimeEntry> changedEntries) {
+        if (changedEntries.isEmpty()) return;
+
+        if (pendingWrites != null) {
+            pendingWrites.save(changedEntries);
         } else {
-            dao.insertTimeEntry(entry);
+            PendingWrites writes = new PendingWrites();
+            writes.save(changedEntries);
+            saveLater(writes);
+        }
+    }
+
+    /**
+     * Führt eine Bearbeitung des Models aus und sammelt dabei alle Schreibzugriffe,
+     * statt sie einzeln abzusetzen
+     */
+    private PendingWrites collectWrites(Runnable edit) {
+        PendingWrites outer = pendingWrites;
+        PendingWrites writes = new PendingWrites();
+        pendingWrites = writes;
+        try {
+            edit.run();
+        } finally {
+            pendingWrites = outer;
+        }
+        return writes;
+    }
+
+    /**
+     * Übergibt gesammelte Schreibzugriffe an die Write-Behind-Queue des DAOs. Das Model ist bereits aktualisiert;
+     * schnell aufeinanderfolgende Bearbeitungen werden dort zusammengefasst und gemeinsam gespeichert.
+     * Schlägt das Speichern fehl, wird der Fehler-Handler aufgerufen, damit die Daten neu geladen werden können.
+     */
+    private void saveLater(PendingWrites writes) {
+        dao.writeBehind(writes);
+    }
+
+    private void handlePersistFailure(String description) {
+        System.err.println(description + " konnte nicht gespeichert werden");
+        if (persistFailureHandler != null) {
+            persistFailureHandler.run();
         }
     }
 
+    /**
+     * Wird aufgerufen, wenn im Hintergrund gespeicherte Änderungen verworfen wurden und
+     * das Model deshalb nicht mehr dem Datenbankstand entspricht
+     */
+    public void setPersistFailureHandler(Runnable handler) {
+        this.persistFailureHandler = handler;
+    }
+
     public void addChangeListener(TimeEntryChangeListener listener) {
         changeListeners.add(listener);
     }
@@ -539,6 +634,11 @@ public class EditableTable extends JTable {
 
             TimeEntry entry = entries.get(row);
 
+            // Archivierte Einträge sind schreibgeschützt
+            if (isArchived(entry)) {
+                return false;
+            }
+
             // Dauer-Spalte ist immer read-only
             if (column == COL_DURATION) {
                 return false;
@@ -579,6 +679,7 @@ public class EditableTable extends JTable {
 
             TimeEntry entry = entries.get(row);
             boolean changed = false;
+            boolean timeChanged = false;
 
             switch (column) {
                 case COL_START_TIME:
@@ -595,7 +696,7 @@ public class EditableTable extends JTable {
                             } else {
                                 entry.setStartTime(newStartTime);
                                 changed = true;
-                                adjustSubsequentTimes(row);
+                                timeChanged = true;
                             }
                         }
                     }
@@ -614,7 +715,7 @@ public class EditableTable extends JTable {
                             } else {
                                 entry.setEndTime(newEndTime);
                                 changed = true;
-                                adjustSubsequentTimes(row);
+                                timeChanged = true;
                             }
                         }
                     }
@@ -630,7 +731,16 @@ public class EditableTable extends JTable {
             }
 
             if (changed) {
-                updateEntryInDatabase(entry);
+                // Geänderte Zeile und verschobene Folgezeilen mit einem Commit speichern
+                boolean shiftFollowing = timeChanged;
+                PendingWrites writes = collectWrites(() -> {
+                    updateEntryInDatabase(entry);
+                    if (shiftFollowing) {
+                        adjustSubsequentTimes(row);
+                    }
+                });
+                saveLater(writes);
+
                 fireTableDataChanged();
                 notifyChangeListeners();
             }
@@ -646,7 +756,6 @@ public class EditableTable extends JTable {
             LocalTime limitedEndTime = startTime.plusMinutes(MAX_DURATION_MINUTES);
             entry.setStartTime(startTime);
             entry.setEndTime(limitedEndTime);
-            updateEntryInDatabase(entry);
 
             // Verbleibende Zeit berechnen
             long remainingMinutes = totalDuration - MAX_DURATION_MINUTES;
@@ -663,8 +772,13 @@ public class EditableTable extends JTable {
                 }
             }
 
-            // Füge Pause ein wenn nächste Zeile voll ist
-            if (nextEntryIsFull && remainingMinutes > 0) {
+            // Begrenzung, Pause und Verschiebung atomar speichern; schlägt nur die Pause fehl,
+            // wird per Savepoint nur dieser Teil verworfen und die Begrenzung bleibt erhalten
+            boolean insertPause = nextEntryIsFull && remainingMinutes > 0;
+            PendingWrites limitWrites = collectWrites(() -> updateEntryInDatabase(entry));
+            PendingWrites pauseWrites = collectWrites(() -> {
+                if (!insertPause) return;
+
                 TimeEntry pauseEntry = new TimeEntry();
                 pauseEntry.setDate(entry.getDate());
                 pauseEntry.setStartTime(limitedEndTime);
@@ -672,21 +786,53 @@ public class EditableTable extends JTable {
                 pauseEntry.setDescription("Pause (automatisch)");
                 pauseEntry.setBreak(true);
 
-                dao.insertTimeEntry(pauseEntry);
+                updateEntryInDatabase(pauseEntry);
                 entries.add(row + 1, pauseEntry);
 
                 // Nachfolgende Zeiten anpassen
                 adjustSubsequentTimesFromIndex(row + 2);
+            });
 
-                JOptionPane.showMessageDialog(EditableTable.this,
-                        String.format("Eintrag auf 2 Stunden begrenzt.\nPause von %d Minuten automatisch eingefügt.",
-                                remainingMinutes),
-                        "2-Stunden-Regel", JOptionPane.INFORMATION_MESSAGE);
-            } else {
-                JOptionPane.showMessageDialog(EditableTable.this,
-                        "Einträge sind auf maximal 2 Stunden begrenzt.\nEintrag wurde entsprechend angepasst.",
-                        "2-Stunden-Regel", JOptionPane.INFORMATION_MESSAGE);
-            }
+            dao.submit(sync -> {
+                boolean[] pauseSaved = {false};
+                boolean committed = sync.inTransaction(tx -> {
+                    dao.apply(limitWrites, sync, tx);
+
+                    if (!pauseWrites.isEmpty()) {
+                        Savepoint beforePause = tx.savepoint("pause");
+                        dao.apply(pauseWrites, sync, tx);
+
+                        if (tx.isRollbackOnly()) {
+                            tx.rollbackTo(beforePause);
+                        } else {
+                            pauseSaved[0] = true;
+                        }
+                    }
+                });
+                if (committed) {
+                    dao.publishResults(limitWrites);
+                    if (pauseSaved[0]) {
+                        dao.publishResults(pauseWrites);
+                    }
+                }
+                return committed && pauseSaved[0] == insertPause;
+            }).thenAccept(savedAsShown -> {
+                if (!savedAsShown) {
+                    // Model enthält Pause bzw. Begrenzung, die nicht gespeichert wurden
+                    handlePersistFailure("2-Stunden-Begrenzung von Zeile " + (row + 1));
+                }
+
+                if (insertPause && savedAsShown) {
+                    JOptionPane.showMessageDialog(EditableTable.this,
+                            String.format("Eintrag auf 2 Stunden begrenzt.\nPause von %d Minuten automatisch eingefügt.",
+                                    remainingMinutes),
+                            "2-Stunden-Regel", JOptionPane.INFORMATION_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(EditableTable.this,
+                            "Einträge sind auf maximal 2 Stunden begrenzt.\nEintrag wurde entsprechend angepasst.",
+                            "2-Stunden-Regel", JOptionPane.INFORMATION_MESSAGE);
+                }
+            });
 
             SwingUtilities.invokeLater(() -> {
                 fireTableDataChanged();
@@ -727,6 +873,7 @@ public class EditableTable extends JTable {
             if (changedEntry.getEndTime() == null) return;
 
             System.out.println("Anpassung der nachfolgenden Zeiten ab Zeile " + (changedRow + 1));
+            List<TimeEntry> changedEntries = new ArrayList<>();
 
             // Alle nachfolgenden Einträge anpassen
             for (int i = changedRow + 1; i < entries.size(); i++) {
@@ -755,11 +902,13 @@ public class EditableTable extends JTable {
                                     " (Dauer: " + originalDuration + " min)");
                         }
 
-                        updateEntryInDatabase(currentEntry);
+                        changedEntries.add(currentEntry);
                     }
                 }
             }
 
+            persistEntries(changedEntries);
+
             // Tabelle aktualisieren um Änderungen anzuzeigen
             SwingUtilities.invokeLater(() -> {
                 fireTableDataChanged();
@@ -29,6 +29,7 @@ public class AlwaysOnTopHandler {
     private boolean minimizedToTray;
     private SystemTray systemTray;
     private TrayIcon trayIcon;
+    private Runnable minimizeToTrayListener;
 
     public AlwaysOnTopHandler(JFrame window) {
         this.window = window;
@@ -258,6 +259,9 @@ public class AlwaysOnTopHandler {
 
     private void minimizeToTray() {
         if (systemTray != null && trayIcon != null) {
+            if (minimizeToTrayListener != null) {
+                minimizeToTrayListener.run();
+            }
             try {
                 systemTray.add(trayIcon);
                 window.setVisible(false);
@@ -323,6 +327,13 @@ public class AlwaysOnTopHandler {
         window.setLocationRelativeTo(null);
     }
 
+    /**
+     * Wird aufgerufen, bevor das Fenster in den System Tray minimiert wird
+     */
+    public void setMinimizeToTrayListener(Runnable listener) {
+        this.minimizeToTrayListener = listener;
+    }
+
     public void cleanup() {
         saveWindowBounds();
         if (systemTray != null && trayIcon != null) {
@@ -1,29 +1,116 @@
--- time_entries Tabelle
+-- time_entries Tabelle (date als Epoch-Day, Zeiten als Sekunde des Tages, Schema-Version 4;
+-- Beschreibung als ID in activity_descriptions, Schema-Version 6; uuid für die Synchronisation, Schema-Version 8)
 CREATE TABLE time_entries (
                               id INTEGER PRIMARY KEY AUTOINCREMENT,
-                              date TEXT NOT NULL,
-                              start_time TEXT NOT NULL,
-                              end_time TEXT,
-                              description TEXT NOT NULL,
+                              date INTEGER NOT NULL,
+                              start_time INTEGER NOT NULL,
+                              end_time INTEGER,
+                              description_id INTEGER NOT NULL REFERENCES activity_descriptions(id),
                               is_break BOOLEAN DEFAULT 0,
-                              created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                              created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                              uuid TEXT NOT NULL UNIQUE DEFAULT (lower(hex(randomblob(16))))
 );
 
 -- consolidated_entries Tabelle
 CREATE TABLE consolidated_entries (
                                       id INTEGER PRIMARY KEY AUTOINCREMENT,
-                                      date TEXT NOT NULL,
-                                      start_time TEXT NOT NULL,
-                                      end_time TEXT NOT NULL,
+                                      date INTEGER NOT NULL,
+                                      start_time INTEGER NOT NULL,
+                                      end_time INTEGER NOT NULL,
                                       description TEXT NOT NULL,
                                       duration_minutes INTEGER NOT NULL,
-                                      created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                                      created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                      uuid TEXT NOT NULL UNIQUE DEFAULT (lower(hex(randomblob(16))))
 );
 
--- activity_descriptions Tabelle (für Autocomplete)
+-- activity_descriptions Tabelle (Verzeichnis der Beschreibungen, Reihenfolge für Autocomplete)
 CREATE TABLE activity_descriptions (
                                        id INTEGER PRIMARY KEY AUTOINCREMENT,
-                                       description TEXT UNIQUE NOT NULL,
+                                       description TEXT NOT NULL COLLATE NOCASE UNIQUE,
                                        usage_count INTEGER DEFAULT 1,
                                        last_used TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
\ No newline at end of file
+);
+
+-- Indizes (Schema-Version 2)
+CREATE INDEX idx_time_entries_date_start ON time_entries(date, start_time);
+CREATE INDEX idx_time_entries_open ON time_entries(start_time) WHERE end_time IS NULL;
+CREATE INDEX idx_consolidated_entries_date ON consolidated_entries(date, start_time);
+CREATE INDEX idx_time_entries_description ON time_entries(description_id);
+
+-- Tagessummen (Schema-Version 5), per Trigger aus time_entries und consolidated_entries gepflegt;
+-- die Trigger legt SchemaMigrator.createDailySummaryTriggers an
+CREATE TABLE daily_summary (
+                               date INTEGER PRIMARY KEY,
+                               work_minutes INTEGER NOT NULL DEFAULT 0,
+                               break_minutes INTEGER NOT NULL DEFAULT 0,
+                               entry_count INTEGER NOT NULL DEFAULT 0,
+                               closed INTEGER NOT NULL DEFAULT 0
+);
+
+-- Volltextsuche (Schema-Version 7) über das Beschreibungsverzeichnis, per Trigger aktuell gehalten;
+-- die Trigger legt SchemaMigrator.createDescriptionSearchTriggers an
+CREATE VIRTUAL TABLE description_search USING fts5(
+                                                     description,
+                                                     content = 'activity_descriptions',
+                                                     content_rowid = 'id',
+                                                     tokenize = 'unicode61 remove_diacritics 2'
+);
+
+
+-- Änderungsprotokoll (Schema-Version 8): jede Änderung an time_entries und consolidated_entries
+-- mit fortlaufender seq; die Trigger legt SchemaMigrator.createChangeLogTriggers an
+CREATE TABLE change_log (
+                            seq INTEGER PRIMARY KEY AUTOINCREMENT,
+                            table_name TEXT NOT NULL,
+                            entry_uuid TEXT NOT NULL,
+                            operation TEXT NOT NULL CHECK (operation IN ('upsert', 'delete')),
+                            modified_at TEXT NOT NULL,
+                            origin TEXT NOT NULL
+);
+CREATE INDEX idx_change_log_entry ON change_log(table_name, entry_uuid, seq);
+
+-- Kennung dieser Datenbank; capture_paused schaltet die Protokoll-Trigger ab
+CREATE TABLE sync_state (
+                            id INTEGER PRIMARY KEY CHECK (id = 1),
+                            database_id TEXT NOT NULL,
+                            capture_paused INTEGER NOT NULL DEFAULT 0
+);
+
+-- Bis zu welcher seq die Änderungen einer anderen Datenbank übernommen sind (DatabaseSync)
+CREATE TABLE sync_peers (
+                            peer_id TEXT PRIMARY KEY,
+                            received_seq INTEGER NOT NULL DEFAULT 0,
+                            last_sync TEXT
+);
+
+-- Ereignis-Journal (Schema-Version 9): im Journal-Modus jede Änderung an time_entries als Ereignis
+-- mit dem neuen Stand, verdichtet nach time_entries bis journal_state.compacted_seq (MutationJournal)
+CREATE TABLE entry_journal (
+                               seq INTEGER PRIMARY KEY,
+                               recorded_at INTEGER NOT NULL DEFAULT (unixepoch()),
+                               kind INTEGER NOT NULL,
+                               entry_id INTEGER,
+                               date INTEGER NOT NULL,
+                               start_time INTEGER,
+                               end_time INTEGER,
+                               description_id INTEGER,
+                               is_break INTEGER
+);
+
+CREATE TABLE journal_state (
+                               id INTEGER PRIMARY KEY CHECK (id = 1),
+                               compacted_seq INTEGER NOT NULL DEFAULT 0,
+                               compacted_at INTEGER
+);
+
+-- Protokoll der Datenbankwartung (Schema-Version 10): Dauer und Größe vor/nach jedem Schritt,
+-- geschrieben von DatabaseMaintenance
+CREATE TABLE maintenance_log (
+                                 id INTEGER PRIMARY KEY AUTOINCREMENT,
+                                 run_at INTEGER NOT NULL,
+                                 step TEXT NOT NULL,
+                                 duration_ms INTEGER NOT NULL,
+                                 size_before INTEGER,
+                                 size_after INTEGER
+);
+CREATE INDEX idx_maintenance_log_run_at ON maintenance_log(run_at);
@@ -0,0 +1,242 @@
+package de.timetracker.database;
+
+import de.timetracker.model.TimeEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Abgleich zweier Datenbankdateien: neue, geänderte und gelöschte Einträge in beide Richtungen
+ * sowie die Entscheidung bei gleichzeitiger Änderung
+ */
+class DatabaseSyncTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 16);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void transfersNewEntriesInBothDirections() throws Exception {
+        Path laptop = tempDir.resolve("laptop.db");
+        Path desktop = tempDir.resolve("desktop.db");
+        insert(laptop, entry(8, 9, "Code-Review"));
+        insert(desktop, entry(9, 10, "Planung"));
+
+        DatabaseSync.SyncResult result = sync(laptop, desktop);
+        assertEquals(1, result.getReceived());
+        assertEquals(1, result.getSent());
+
+        assertEquals(List.of("08:00-09:00 Code-Review", "09:00-10:00 Planung"), entries(laptop));
+        assertEquals(entries(laptop), entries(desktop));
+
+        // Ein zweiter Abgleich ohne neue Änderungen überträgt nichts
+        DatabaseSync.SyncResult again = sync(laptop, desktop);
+        assertEquals(0, again.getReceived());
+        assertEquals(0, again.getSent());
+    }
+
+    @Test
+    void transfersUpdatesAndDeletes() throws Exception {
+        Path laptop = tempDir.resolve("laptop.db");
+        Path desktop = tempDir.resolve("desktop.db");
+        TimeEntry review = entry(8, 9, "Code-Review");
+        TimeEntry planning = entry(9, 10, "Planung");
+        insert(laptop, review, planning);
+        sync(laptop, desktop);
+
+        // Geändert auf dem Laptop, gelöscht auf dem Desktop
+        DatabaseManager dbManager = open(laptop);
+        try {
+            review.setEndTime(LocalTime.of(8, 45));
+            review.setDescription("Code-Review Sync");
+            assertTrue(new TimeEntryDAO(dbManager).updateTimeEntry(review));
+        } finally {
+            dbManager.close();
+        }
+        dbManager = open(desktop);
+        try {
+            TimeEntryDAO dao = new TimeEntryDAO(dbManager);
+            TimeEntry copy = dao.getTimeEntriesByDate(DAY).get(1);
+            assertEquals("Planung", copy.getDescription());
+            assertTrue(dao.deleteTimeEntry(copy.getId()));
+        } finally {
+            dbManager.close();
+        }
+
+        DatabaseSync.SyncResult result = sync(laptop, desktop);
+        assertEquals(1, result.getReceived());
+        assertEquals(1, result.getSent());
+
+        assertEquals(List.of("08:00-08:45 Code-Review Sync"), entries(laptop));
+        assertEquals(entries(laptop), entries(desktop));
+    }
+
+    @Test
+    void laterChangeWinsOverEarlierOne() throws Exception {
+        Path laptop = tempDir.resolve("laptop.db");
+        Path desktop = tempDir.resolve("desktop.db");
+        TimeEntry review = entry(8, 9, "Code-Review");
+        insert(laptop, review);
+        sync(laptop, desktop);
+        String uuid = uuidOf(laptop, review.getId());
+
+        rename(laptop, uuid, "Vom Laptop");
+        rename(desktop, uuid, "Vom Desktop");
+        setLastModified(laptop, uuid, "2030-01-01T10:00:00.000Z");
+        setLastModified(desktop, uuid, "2030-01-01T09:59:59.999Z");
+
+        sync(laptop, desktop);
+
+        assertEquals(List.of("08:00-09:00 Vom Laptop"), entries(laptop));
+        assertEquals(entries(laptop), entries(desktop));
+    }
+
+    @Test
+    void equalTimestampsAreDecidedByDatabaseId() throws Exception {
+        Path laptop = tempDir.resolve("laptop.db");
+        Path desktop = tempDir.resolve("desktop.db");
+        TimeEntry review = entry(8, 9, "Code-Review");
+        insert(laptop, review);
+        sync(laptop, desktop);
+        String uuid = uuidOf(laptop, review.getId());
+
+        rename(laptop, uuid, "Vom Laptop");
+        rename(desktop, uuid, "Vom Desktop");
+        setLastModified(laptop, uuid, "2030-01-01T10:00:00.000Z");
+        setLastModified(desktop, uuid, "2030-01-01T10:00:00.000Z");
+
+        String laptopId = databaseId(laptop);
+        String desktopId = databaseId(desktop);
+        assertNotEquals(laptopId, desktopId);
+        String winner = laptopId.compareTo(desktopId) > 0 ? "Vom Laptop" : "Vom Desktop";
+
+        sync(laptop, desktop);
+        assertEquals(List.of("08:00-09:00 " + winner), entries(laptop));
+        assertEquals(entries(laptop), entries(desktop));
+
+        // Von der anderen Seite aus gestartet bleibt es beim selben Ergebnis
+        sync(desktop, laptop);
+        assertEquals(List.of("08:00-09:00 " + winner), entries(desktop));
+        assertEquals(entries(desktop), entries(laptop));
+    }
+
+    private static DatabaseManager open(Path file) {
+        return new DatabaseManager(DatabaseLocation.file(file));
+    }
+
+    private static DatabaseSync.SyncResult sync(Path own, Path peer) throws SQLException {
+        DatabaseManager dbManager = open(own);
+        try {
+            return new DatabaseSync(dbManager).syncWith(peer);
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static void insert(Path file, TimeEntry... entries) {
+        DatabaseManager dbManager = open(file);
+        try {
+            assertTrue(new TimeEntryDAO(dbManager).insertTimeEntries(List.of(entries)));
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    // Über den Eintrag mit der uuid, weil die id in jeder Datei anders vergeben wird
+    private static void rename(Path file, String uuid, String description) throws SQLException {
+        DatabaseManager dbManager = open(file);
+        try {
+            TimeEntryDAO dao = new TimeEntryDAO(dbManager);
+            int id;
+            try (Connection conn = dbManager.getReadConnection();
+                 PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM time_entries WHERE uuid = ?")) {
+                pstmt.setString(1, uuid);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    id = rs.getInt(1);
+                }
+            }
+            for (TimeEntry entry : dao.getTimeEntriesByDate(DAY)) {
+                if (entry.getId() == id) {
+                    entry.setDescription(description);
+                    assertTrue(dao.updateTimeEntry(entry));
+                }
+            }
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static void setLastModified(Path file, String uuid, String modifiedAt) throws SQLException {
+        DatabaseManager dbManager = open(file);
+        try (Connection conn = dbManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(
+                     "UPDATE change_log SET modified_at = ? WHERE seq = " +
+                             "(SELECT MAX(seq) FROM change_log WHERE entry_uuid = ?)")) {
+            pstmt.setString(1, modifiedAt);
+            pstmt.setString(2, uuid);
+            assertEquals(1, pstmt.executeUpdate());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static String uuidOf(Path file, int id) throws SQLException {
+        DatabaseManager dbManager = open(file);
+        try (Connection conn = dbManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT uuid FROM time_entries WHERE id = ?")) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getString(1);
+            }
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static String databaseId(Path file) throws SQLException {
+        DatabaseManager dbManager = open(file);
+        try (Connection conn = dbManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT database_id FROM sync_state")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static List<String> entries(Path file) {
+        DatabaseManager dbManager = open(file);
+        try {
+            List<String> entries = new ArrayList<>();
+            for (TimeEntry entry : new TimeEntryDAO(dbManager).getTimeEntriesByDate(DAY)) {
+                entries.add(entry.getStartTime() + "-" + entry.getEndTime() + " " + entry.getDescription());
+            }
+            return entries;
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private static TimeEntry entry(int startHour, int endHour, String description) {
+        TimeEntry entry = new TimeEntry(DAY, LocalTime.of(startHour, 0), description);
+        entry.setEndTime(LocalTime.of(endHour, 0));
+        return entry;
+    }
+}
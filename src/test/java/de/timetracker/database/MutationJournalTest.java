@@ -0,0 +1,148 @@
+package de.timetracker.database;
+
+import de.timetracker.model.TimeEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Im Journal-Modus müssen Abfragen aus Schnappschuss und offenen Ereignissen dasselbe liefern wie nach dem
+ * Verdichten und wie eine Datenbank ohne Journal
+ */
+class MutationJournalTest {
+    private static final LocalDate MONDAY = LocalDate.of(2025, 6, 16);
+    private static final LocalDate TUESDAY = MONDAY.plusDays(1);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replayedStateMatchesCompactedState() throws Exception {
+        DatabaseManager dbManager = open("journal.db", true);
+        try {
+            TimeEntryDAO dao = new TimeEntryDAO(dbManager);
+            applyChanges(dao);
+
+            try (Connection conn = dbManager.getConnection()) {
+                assertTrue(dbManager.getJournal().tailLength(conn) > 0);
+            }
+            List<String> replayed = observe(dao);
+
+            try (Connection conn = dbManager.getConnection()) {
+                assertTrue(dbManager.getJournal().compact(conn) > 0);
+                assertEquals(0, dbManager.getJournal().tailLength(conn));
+            }
+            dbManager.getDayCache().invalidateAll();
+
+            assertEquals(replayed, observe(dao));
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    void replayedStateMatchesDatabaseWithoutJournal() throws Exception {
+        DatabaseManager journaled = open("journal.db", true);
+        DatabaseManager plain = open("plain.db", false);
+        try {
+            TimeEntryDAO journaledDao = new TimeEntryDAO(journaled);
+            TimeEntryDAO plainDao = new TimeEntryDAO(plain);
+            applyChanges(journaledDao);
+            applyChanges(plainDao);
+
+            assertEquals(observe(plainDao), observe(journaledDao));
+        } finally {
+            journaled.close();
+            plain.close();
+        }
+    }
+
+    @Test
+    void compactionAfterReopeningKeepsAllChanges() throws Exception {
+        DatabaseManager first = open("journal.db", true);
+        List<String> before;
+        try {
+            TimeEntryDAO dao = new TimeEntryDAO(first);
+            applyChanges(dao);
+            before = observe(dao);
+        } finally {
+            first.close();
+        }
+
+        // Beim Öffnen wird ein verbliebener Rest verdichtet, auch ohne Journal-Modus
+        DatabaseManager second = open("journal.db", false);
+        try (Connection conn = second.getConnection()) {
+            assertEquals(0, second.getJournal().tailLength(conn));
+            assertEquals(before, observe(new TimeEntryDAO(second)));
+        } finally {
+            second.close();
+        }
+    }
+
+    private DatabaseManager open(String fileName, boolean journaled) {
+        return new DatabaseManager(DatabaseLocation.file(tempDir.resolve(fileName)), PragmaProfile.DURABLE, journaled);
+    }
+
+    /**
+     * Einfügen, Bearbeiten, Verschieben auf einen anderen Tag, Löschen und ein laufender Eintrag
+     */
+    private static void applyChanges(TimeEntryDAO dao) {
+        TimeEntry review = entry(MONDAY, 8, 9, "Code-Review");
+        TimeEntry pause = entry(MONDAY, 9, 10, "Pause");
+        TimeEntry planning = entry(MONDAY, 10, 11, "Planung");
+        TimeEntry obsolete = entry(MONDAY, 11, 12, "Verworfen");
+        assertTrue(dao.insertTimeEntries(List.of(review, pause, planning, obsolete)));
+
+        review.setEndTime(LocalTime.of(9, 15));
+        review.setDescription("Code-Review Sync");
+        assertTrue(dao.updateTimeEntry(review));
+
+        planning.setDate(TUESDAY);
+        assertTrue(dao.updateTimeEntry(planning));
+
+        assertTrue(dao.deleteTimeEntry(obsolete.getId()));
+
+        TimeEntry running = new TimeEntry(TUESDAY, LocalTime.of(13, 0), "Sprint Planung");
+        assertTrue(dao.insertTimeEntry(running));
+    }
+
+    private static List<String> observe(TimeEntryDAO dao) {
+        List<String> observed = new ArrayList<>();
+        for (LocalDate day : List.of(MONDAY, TUESDAY)) {
+            observed.add(day + ": " + describe(dao.getTimeEntriesByDate(day)));
+            observed.add(day + " Summen: " + dao.getDayStatistics(day));
+        }
+        observed.add("Zeitraum: " + describe(dao.getTimeEntriesBetween(MONDAY, TUESDAY)));
+        observed.add("Statistik: " + dao.getDayStatisticsBetween(MONDAY, TUESDAY));
+        TimeEntry active = dao.getActiveTimeEntry();
+        observed.add("Aktiv: " + (active != null ? describe(List.of(active)) : "keiner"));
+        observed.add("Suche: " + describe(dao.searchEntries("planung", MONDAY, TUESDAY, 10)));
+        observed.add("Archivierbar: " + dao.getArchivableYears());
+        return observed;
+    }
+
+    private static String describe(List<TimeEntry> entries) {
+        StringBuilder text = new StringBuilder();
+        for (TimeEntry entry : entries) {
+            text.append('[').append(entry.getId()).append(' ').append(entry.getDate()).append(' ')
+                    .append(entry.getStartTime()).append('-').append(entry.getEndTime()).append(' ')
+                    .append(entry.getDescription()).append(entry.isBreak() ? " (Pause)" : "").append(']');
+        }
+        return text.toString();
+    }
+
+    private static TimeEntry entry(LocalDate date, int startHour, int endHour, String description) {
+        TimeEntry entry = new TimeEntry(date, LocalTime.of(startHour, 0), description);
+        entry.setEndTime(LocalTime.of(endHour, 0));
+        return entry;
+    }
+}
@@ -0,0 +1,191 @@
+package de.timetracker.database;
+
+import de.timetracker.model.DayStatistics;
+import de.timetracker.model.TimeEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Migrationen 1 bis 10 gegen eine Datenbank im Format vor der ersten Migration
+ * (user_version 0, Datum und Uhrzeiten als Text, Beschreibung als Text in time_entries)
+ */
+class SchemaMigratorTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 15);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void migratesBaselineDatabaseToLatestVersion() throws Exception {
+        Path file = createBaselineDatabase();
+
+        DatabaseManager dbManager = new DatabaseManager(DatabaseLocation.file(file));
+        try (Connection conn = dbManager.getReadConnection()) {
+            assertEquals(10, new SchemaMigrator().getLatestVersion());
+            assertEquals(10, SchemaMigrator.readUserVersion(conn));
+            assertEquals(5, count(conn, "time_entries"));
+            assertEquals(1, count(conn, "consolidated_entries"));
+            // Ausgangsstand für den ersten Abgleich
+            assertEquals(6, count(conn, "change_log"));
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    void keepsDatesAndTimesOfEveryEntry() throws Exception {
+        DatabaseManager dbManager = new DatabaseManager(DatabaseLocation.file(createBaselineDatabase()));
+        try {
+            TimeEntryDAO dao = new TimeEntryDAO(dbManager);
+            List<TimeEntry> entries = dao.getTimeEntriesByDate(DAY);
+
+            assertEquals(5, entries.size());
+            // Nachkommastellen der Sekunden entfallen
+            assertEquals(LocalTime.of(8, 0, 12), entries.get(0).getStartTime());
+            assertEquals(LocalTime.of(9, 30, 5), entries.get(0).getEndTime());
+            assertEquals(LocalTime.of(9, 30, 5), entries.get(1).getStartTime());
+            assertEquals(LocalTime.of(10, 0), entries.get(1).getEndTime());
+            assertTrue(entries.get(1).isBreak());
+            assertEquals(DAY, entries.get(4).getDate());
+
+            DayStatistics statistics = dao.getDayStatistics(DAY);
+            assertEquals(5, statistics.getEntryCount());
+            // 08:00:12-09:30:05 zählt als 89 volle Minuten
+            assertEquals(89 + 60 + 60 + 60, statistics.getWorkMinutes());
+            assertEquals(29, statistics.getBreakMinutes());
+            assertTrue(statistics.isClosed());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    void referencesEachSpellingByItsOwnDescriptionId() throws Exception {
+        DatabaseManager dbManager = new DatabaseManager(DatabaseLocation.file(createBaselineDatabase()));
+        try {
+            List<TimeEntry> entries = new TimeEntryDAO(dbManager).getTimeEntriesByDate(DAY);
+            TimeEntry meeting = entries.get(0);
+            TimeEntry lowerMeeting = entries.get(2);
+            TimeEntry secondMeeting = entries.get(3);
+            TimeEntry exercise = entries.get(4);
+
+            assertEquals("Meeting", meeting.getDescription());
+            assertEquals("meeting", lowerMeeting.getDescription());
+            assertEquals("Meeting", secondMeeting.getDescription());
+            assertEquals("Übung", exercise.getDescription());
+
+            assertEquals(meeting.getDescriptionId(), secondMeeting.getDescriptionId());
+            assertNotEquals(meeting.getDescriptionId(), lowerMeeting.getDescriptionId());
+            assertTrue(meeting.getDescriptionId() > 0 && lowerMeeting.getDescriptionId() > 0);
+
+            try (Connection conn = dbManager.getReadConnection()) {
+                // "übung" im alten Verzeichnis und "Übung" im Eintrag sind verschiedene Schreibweisen
+                assertEquals(2, countWhere(conn, "activity_descriptions", "description IN ('übung', 'Übung')"));
+            }
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    @Test
+    void reopeningMigratedDatabaseChangesNothing() throws Exception {
+        Path file = createBaselineDatabase();
+
+        DatabaseManager first = new DatabaseManager(DatabaseLocation.file(file));
+        List<TimeEntry> before = new TimeEntryDAO(first).getTimeEntriesBetween(DAY, DAY);
+        first.close();
+
+        DatabaseManager second = new DatabaseManager(DatabaseLocation.file(file));
+        try {
+            List<TimeEntry> after = new TimeEntryDAO(second).getTimeEntriesBetween(DAY, DAY);
+            assertEquals(before.toString(), after.toString());
+            for (int i = 0; i < before.size(); i++) {
+                assertEquals(before.get(i).getDescriptionId(), after.get(i).getDescriptionId());
+            }
+        } finally {
+            second.close();
+        }
+    }
+
+    private Path createBaselineDatabase() throws SQLException {
+        Path file = tempDir.resolve("timetracker.db");
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file);
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE time_entries (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    date TEXT NOT NULL,
+                    start_time TEXT NOT NULL,
+                    end_time TEXT,
+                    description TEXT NOT NULL,
+                    is_break BOOLEAN DEFAULT 0,
+                    created_at TEXT DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE consolidated_entries (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    date TEXT NOT NULL,
+                    start_time TEXT NOT NULL,
+                    end_time TEXT NOT NULL,
+                    description TEXT NOT NULL,
+                    duration_minutes INTEGER NOT NULL,
+                    created_at TEXT DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE activity_descriptions (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    description TEXT UNIQUE NOT NULL,
+                    usage_count INTEGER DEFAULT 1,
+                    last_used TEXT DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+
+            stmt.execute("""
+                INSERT INTO activity_descriptions (description, usage_count, last_used) VALUES
+                    ('Meeting', 5, '2025-06-15T10:00:00'),
+                    ('meeting', 7, '2025-06-15T12:00:00'),
+                    ('übung', 1, '2025-06-14T09:00:00')
+            """);
+            stmt.execute("""
+                INSERT INTO time_entries (date, start_time, end_time, description, is_break) VALUES
+                    ('2025-06-15', '08:00:12.345', '09:30:05', 'Meeting', 0),
+                    ('2025-06-15', '09:30:05', '10:00', 'Pause', 1),
+                    ('2025-06-15', '10:00', '11:00', 'meeting', 0),
+                    ('2025-06-15', '11:00', '12:00', ' Meeting ', 0),
+                    ('2025-06-15', '12:00', '13:00', 'Übung', 0)
+            """);
+            stmt.execute("""
+                INSERT INTO consolidated_entries (date, start_time, end_time, description, duration_minutes)
+                VALUES ('2025-06-15', '08:00', '12:00', 'Meeting', 209)
+            """);
+        }
+        return file;
+    }
+
+    private static int count(Connection conn, String table) throws SQLException {
+        return countWhere(conn, table, "1");
+    }
+
+    private static int countWhere(Connection conn, String table, String condition) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE " + condition)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package de.timetracker.importer;
+
+import de.timetracker.database.DatabaseLocation;
+import de.timetracker.database.DatabaseManager;
+import de.timetracker.database.TimeEntryDAO;
+import de.timetracker.export.CsvExportSink;
+import de.timetracker.model.TimeEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import im Exportformat: gültige Dateien werden vollständig übernommen, bei Überschneidungen oder
+ * laufenden Einträgen wird nichts eingefügt
+ */
+class CsvTimeEntryImporterTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 16);
+
+    @TempDir
+    Path tempDir;
+
+    private DatabaseManager dbManager;
+    private TimeEntryDAO dao;
+
+    @BeforeEach
+    void openDatabase() {
+        dbManager = new DatabaseManager(DatabaseLocation.file(tempDir.resolve("timetracker.db")));
+        dao = new TimeEntryDAO(dbManager);
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        dbManager.close();
+    }
+
+    @Test
+    void importsValidFile() throws Exception {
+        CsvTimeEntryImporter.ImportResult result = importLines(
+                "16.06.2025,08:00,09:30,01:30,\"Code-Review, Teil 1\",Nein",
+                "16.06.2025,09:30,10:00,00:30,Pause,Ja",
+                "17.06.2025,10:00,11:00,01:00,\"Planung \"\"Q3\"\"\",Nein");
+
+        assertTrue(result.isSuccessful(), result.getErrors().toString());
+        assertEquals(3, result.getImportedCount());
+
+        List<TimeEntry> entries = dao.getTimeEntriesBetween(DAY, DAY.plusDays(1));
+        assertEquals(3, entries.size());
+        assertEquals("Code-Review, Teil 1", entries.get(0).getDescription());
+        assertEquals(LocalTime.of(9, 30), entries.get(0).getEndTime());
+        assertTrue(entries.get(1).isBreak());
+        assertEquals("Planung \"Q3\"", entries.get(2).getDescription());
+    }
+
+    @Test
+    void rejectsOverlapWithinFile() throws Exception {
+        CsvTimeEntryImporter.ImportResult result = importLines(
+                "16.06.2025,08:00,09:30,01:30,Code-Review,Nein",
+                "16.06.2025,09:00,10:00,01:00,Planung,Nein");
+
+        assertFalse(result.isSuccessful());
+        assertEquals(0, result.getImportedCount());
+        assertEquals(1, result.getErrors().size());
+        String error = result.getErrors().get(0);
+        assertTrue(error.contains("überschneidet sich"), error);
+        assertFalse(error.contains("bereits vorhanden"), error);
+        assertTrue(dao.getTimeEntriesByDate(DAY).isEmpty());
+    }
+
+    @Test
+    void rejectsOverlapWithExistingEntry() throws Exception {
+        TimeEntry existing = new TimeEntry(DAY, LocalTime.of(9, 0), "Daily");
+        existing.setEndTime(LocalTime.of(9, 15));
+        assertTrue(dao.insertTimeEntry(existing));
+
+        CsvTimeEntryImporter.ImportResult result = importLines(
+                "16.06.2025,08:00,09:10,01:10,Code-Review,Nein",
+                "17.06.2025,09:00,10:00,01:00,Planung,Nein");
+
+        assertFalse(result.isSuccessful());
+        assertEquals(0, result.getImportedCount());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).contains("(bereits vorhanden)"), result.getErrors().get(0));
+        // Auch der gültige zweite Tag wird nicht übernommen
+        assertEquals(1, dao.getTimeEntriesBetween(DAY, DAY.plusDays(1)).size());
+    }
+
+    @Test
+    void adjacentEntriesDoNotOverlap() throws Exception {
+        TimeEntry existing = new TimeEntry(DAY, LocalTime.of(10, 0), "Daily");
+        existing.setEndTime(LocalTime.of(10, 15));
+        assertTrue(dao.insertTimeEntry(existing));
+
+        CsvTimeEntryImporter.ImportResult result = importLines(
+                "16.06.2025,08:00,09:00,01:00,Code-Review,Nein",
+                "16.06.2025,09:00,10:00,01:00,Planung,Nein");
+
+        assertTrue(result.isSuccessful(), result.getErrors().toString());
+        assertEquals(2, result.getImportedCount());
+        assertEquals(3, dao.getTimeEntriesByDate(DAY).size());
+    }
+
+    @Test
+    void rejectsRunningEntry() throws Exception {
+        CsvTimeEntryImporter.ImportResult result = importLines(
+                "16.06.2025,08:00,09:00,01:00,Code-Review,Nein",
+                "16.06.2025,09:00,,,Planung,Nein");
+
+        assertFalse(result.isSuccessful());
+        assertEquals(0, result.getImportedCount());
+        assertTrue(result.getErrors().get(0).startsWith("Zeile 3: Endzeit fehlt"), result.getErrors().get(0));
+        assertTrue(dao.getTimeEntriesByDate(DAY).isEmpty());
+        assertNull(dao.getActiveTimeEntry());
+    }
+
+    @Test
+    void rejectsUnknownHeader() throws Exception {
+        Path file = tempDir.resolve("import.csv");
+        Files.writeString(file, "Datum;Start;Ende\n16.06.2025;08:00;09:00\n", StandardCharsets.UTF_8);
+
+        IOException e = assertThrows(IOException.class,
+                () -> new CsvTimeEntryImporter(dao).importFile(file, (parsed, total) -> { }));
+        assertTrue(e.getMessage().contains(CsvExportSink.HEADER));
+    }
+
+    private CsvTimeEntryImporter.ImportResult importLines(String... lines) throws IOException {
+        List<String> content = new ArrayList<>();
+        content.add(CsvExportSink.HEADER);
+        content.addAll(List.of(lines));
+        Path file = tempDir.resolve("import.csv");
+        Files.write(file, content, StandardCharsets.UTF_8);
+        return new CsvTimeEntryImporter(dao).importFile(file, (parsed, total) -> { });
+    }
+}